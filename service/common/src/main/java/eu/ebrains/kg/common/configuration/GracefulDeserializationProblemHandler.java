@@ -45,7 +45,12 @@ import java.util.Map;
 public class GracefulDeserializationProblemHandler extends DeserializationProblemHandler {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    public static ThreadLocal<Map<Integer, List<String>>> ERROR_REPORTING_THREAD_LOCAL = new ThreadLocal<>();
+    /**
+     * Collects the parsing errors of the response which is currently decoded on this thread. Decoding and the
+     * subsequent {@link #parsingErrorHandler(Object)} happen on the same thread, so concurrent requests don't mix up
+     * their errors as long as the map is consumed (and removed) right after the decoding.
+     */
+    public static final ThreadLocal<Map<Integer, List<String>>> ERROR_REPORTING_THREAD_LOCAL = new ThreadLocal<>();
 
     private void recordError( JsonParser p, Type targetType){
         final int rootObjectIndex = p.getParsingContext().pathAsPointer().tail().getMatchingIndex();
@@ -94,6 +99,7 @@ public class GracefulDeserializationProblemHandler extends DeserializationProble
 
     public static <T> void parsingErrorHandler(T result){
         final Map<Integer, List<String>> errorMap = GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.get();
+        GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.remove();
         if(errorMap!=null && result instanceof ResultsOfKG<?>){
             final ResultsOfKG<?> resultsOfKG = (ResultsOfKG<?>) result;
             final List<?> data = resultsOfKG.getData();
@@ -24,10 +24,12 @@
 package eu.ebrains.kg.common.controller.kg;
 
 import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.source.ResultsOfKG;
 import eu.ebrains.kg.common.services.KGServiceClient;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 
 @Component
@@ -38,8 +40,15 @@ public class KG  {
         this.kgServiceClient = kgServiceClient;
     }
 
-    public <T> T executeQuery(Class<T> clazz, DataStage dataStage, String queryId, int from, int size) {
-        return kgServiceClient.executeQueryForIndexing(clazz, dataStage, queryId, from, size);
+    public <T> ResultsOfKG<T> executeQuery(Class<T> instanceClazz, DataStage dataStage, String queryId, int from, int size, Map<String, String> queryParameters, Consumer<T> instanceConsumer) {
+        return kgServiceClient.executeQueryForIndexing(instanceClazz, dataStage, queryId, from, size, queryParameters, instanceConsumer);
+    }
+
+    /**
+     * Executes the query only once - a failing request is thrown (see {@link KGServiceClient#executeQueryForIndexingWithoutRetries})
+     */
+    public <T> ResultsOfKG<T> executeQueryWithoutRetries(Class<T> instanceClazz, DataStage dataStage, String queryId, int from, int size, Map<String, String> queryParameters, Consumer<T> instanceConsumer) {
+        return kgServiceClient.executeQueryForIndexingWithoutRetries(instanceClazz, dataStage, queryId, from, size, queryParameters, instanceConsumer);
     }
 
     public <T> T executeQueryForInstance(Class<T> clazz, DataStage dataStage, String queryId, String id, boolean asServiceAccount) {
@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation;
+
+/**
+ * The number of instances per page queried from the KG, tuned within a window: The size is halved as soon as a page
+ * takes longer than the target latency, its response exceeds the maximal response size or the request fails. It grows
+ * by a quarter as long as full pages are answered in less than half of the target latency and with less than half of
+ * the maximal response size.
+ */
+public class AdaptivePageSize {
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyInMs;
+    private final long maxResponseSizeInBytes;
+    private int currentSize;
+
+    public AdaptivePageSize(int initialSize, int minSize, int maxSize, long targetLatencyInMs, long maxResponseSizeInBytes) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetLatencyInMs = targetLatencyInMs;
+        this.maxResponseSizeInBytes = maxResponseSizeInBytes;
+        this.currentSize = Math.min(this.maxSize, Math.max(this.minSize, initialSize));
+    }
+
+    public synchronized int get() {
+        return currentSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @param size                the number of instances requested
+     * @param numberOfInstances   the number of instances returned - only full pages are considered to grow the size
+     * @param latencyInMs         the time spent waiting for the response (not the time spent processing it)
+     * @param responseSizeInBytes the size of the response (null if unknown)
+     */
+    public synchronized void onSuccess(int size, int numberOfInstances, long latencyInMs, Long responseSizeInBytes) {
+        final long responseSize = responseSizeInBytes != null ? responseSizeInBytes : 0;
+        if (latencyInMs > targetLatencyInMs || responseSize > maxResponseSizeInBytes) {
+            decrease();
+        } else if (numberOfInstances >= size && size >= currentSize && latencyInMs < targetLatencyInMs / 2 && responseSize < maxResponseSizeInBytes / 2) {
+            currentSize = Math.min(maxSize, currentSize + Math.max(1, currentSize / 4));
+        }
+    }
+
+    /**
+     * @return the reduced size
+     */
+    public synchronized int onFailure() {
+        decrease();
+        return currentSize;
+    }
+
+    private void decrease() {
+        currentSize = Math.max(minSize, currentSize / 2);
+    }
+}
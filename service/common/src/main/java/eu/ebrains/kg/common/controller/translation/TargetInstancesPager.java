@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation;
+
+import eu.ebrains.kg.common.controller.translation.models.TargetInstancesResult;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+/**
+ * Iterates through the (translated) pages of a query. The first page is always queried on its own since we need to
+ * know the total number of instances. As soon as the total is known, the remaining pages are requested concurrently
+ * with at most {@code maxConcurrentRequests} requests in flight. The pages are returned in the order of their offsets.
+ *
+ * With {@code maxConcurrentRequests <= 1}, the pages are queried one after the other. The iteration can start at an
+ * offset (e.g. to resume an interrupted indexing run).
+ *
+ * The page size is read whenever a page is requested, so it can change during the iteration (see
+ * {@link AdaptivePageSize}) - the offsets are the sum of the sizes of the previous pages.
+ */
+public class TargetInstancesPager<Target> implements Iterator<TargetInstancesResult<Target>> {
+
+    @FunctionalInterface
+    interface PageQuery<Target> {
+        TargetInstancesResult<Target> query(int from, int size);
+    }
+
+    private final PageQuery<Target> query;
+    private final IntSupplier size;
+    private final int maxConcurrentRequests;
+    private final ExecutorService executorService;
+    private final Deque<Future<TargetInstancesResult<Target>>> pendingPages = new ArrayDeque<>();
+    private Integer total = null;
+    private int from;
+    private boolean hasMore = true;
+
+    TargetInstancesPager(PageQuery<Target> query, int from, IntSupplier size, int maxConcurrentRequests, ExecutorService executorService) {
+        this.query = query;
+        this.from = from;
+        this.size = size;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pendingPages.isEmpty() || hasMore;
+    }
+
+    @Override
+    public TargetInstancesResult<Target> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final TargetInstancesResult<Target> page;
+        if (pendingPages.isEmpty()) {
+            final int pageSize = size.getAsInt();
+            page = query.query(from, pageSize);
+            moveOn(page, pageSize);
+        } else {
+            page = await(pendingPages.poll());
+        }
+        requestNextPages();
+        return page;
+    }
+
+    private void moveOn(TargetInstancesResult<Target> results, int pageSize) {
+        if (results != null && results.getTotal() != null) {
+            total = results.getTotal();
+        }
+        if (results != null && results.getFrom() != null && results.getSize() != null) {
+            from = results.getFrom() + results.getSize();
+        } else {
+            from = from + pageSize;
+        }
+        hasMore = total != null && from < total;
+    }
+
+    private void requestNextPages() {
+        if (maxConcurrentRequests > 1 && total != null) {
+            while (hasMore && pendingPages.size() < maxConcurrentRequests) {
+                final int pageFrom = from;
+                final int pageSize = size.getAsInt();
+                pendingPages.add(executorService.submit(() -> query.query(pageFrom, pageSize)));
+                from = from + pageSize;
+                hasMore = from < total;
+            }
+        }
+    }
+
+    private TargetInstancesResult<Target> await(Future<TargetInstancesResult<Target>> pendingPage) {
+        try {
+            return pendingPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPendingPages();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            cancelPendingPages();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void cancelPendingPages() {
+        pendingPages.forEach(p -> p.cancel(true));
+        pendingPages.clear();
+        hasMore = false;
+    }
+}
@@ -31,11 +31,12 @@ import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.controller.translation.utils.TranslationUtils;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.ErrorReport;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
 import eu.ebrains.kg.common.model.source.ResultsOfKG;
 import eu.ebrains.kg.common.model.source.SourceInstance;
 import eu.ebrains.kg.common.model.target.TargetInstance;
 import eu.ebrains.kg.common.model.target.TargetInternalReference;
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import eu.ebrains.kg.common.utils.ESHelper;
 import eu.ebrains.kg.common.utils.IdUtils;
@@ -43,12 +44,15 @@ import eu.ebrains.kg.common.utils.TranslationException;
 import eu.ebrains.kg.common.utils.TranslatorUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 import static eu.ebrains.kg.common.controller.translation.utils.TranslationUtils.getStats;
 
@@ -56,70 +60,290 @@ import static eu.ebrains.kg.common.controller.translation.utils.TranslationUtils
 public class TranslationController {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final KG kg;
-    private final DOICitationFormatter doiCitationFormatter;
+    private final DOICitationResolver doiCitationResolver;
     private final ESServiceClient esServiceClient;
     private final ESHelper esHelper;
     private final TranslatorRegistry translatorRegistry;
+    private final int translationParallelism;
+    private final int prefetchBatchSize;
 
-    public TranslationController(KG kg, DOICitationFormatter doiCitationFormatter, ESServiceClient esServiceClient, ESHelper esHelper, TranslatorRegistry translatorRegistry) {
-        this.doiCitationFormatter = doiCitationFormatter;
+    public TranslationController(KG kg, DOICitationResolver doiCitationResolver, ESServiceClient esServiceClient, ESHelper esHelper, TranslatorRegistry translatorRegistry, @Value("${TRANSLATION_PARALLELISM:1}") int translationParallelism, @Value("${TRANSLATION_PREFETCH_BATCH_SIZE:50}") int prefetchBatchSize) {
+        this.translationParallelism = translationParallelism;
+        this.prefetchBatchSize = Math.max(1, prefetchBatchSize);
+        this.doiCitationResolver = doiCitationResolver;
         this.kg = kg;
         this.esServiceClient = esServiceClient;
         this.esHelper = esHelper;
         this.translatorRegistry = translatorRegistry;
     }
 
+    /**
+     * Queries a page of source instances and translates them while the response is still being read - every
+     * instance is translated as soon as it has been deserialized. This keeps the memory footprint independent of
+     * the size of the source instances of a page.
+     */
+    public <Source extends SourceInstance, Target extends TargetInstance> TargetInstancesResult<Target> queryAndTranslateToTargetInstances(KG kg, Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, String queryId, DataStage dataStage, int from, int size, Map<String, String> queryParameters, Integer trendingThreshold, Map<String, Object> translationContext) {
+        logger.info(String.format("Starting to query %d %s from %d", size, translator.getSourceType().getSimpleName(), from));
+        try (PageTranslation<Source, Target> translation = new PageTranslation<>(translator, dataStage, trendingThreshold, translationContext)) {
+            final ResultsOfKG<Source> instanceResults = kg.executeQuery(translator.getSourceType(), dataStage, queryId, from, size, queryParameters, translation);
+            if (instanceResults == null) {
+                return emptyResult(translator, from, size);
+            }
+            Stats stats = getStats(instanceResults.getTotal(), from, translation.getNumberOfInstances());
+            logger.info(String.format("Queried %d %s (%s)", stats.getPageSize(), translator.getSourceType().getSimpleName(), stats.getInfo()));
+            return toTargetInstancesResult(instanceResults, translation);
+        }
+    }
 
-    public <Source extends SourceInstance, Target extends TargetInstance> TargetInstancesResult<Target> translateToTargetInstances(KG kg, Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, String queryId, DataStage dataStage, int from, int size, Integer trendingThreshold, Map<String, Object> translationContext) {
+    /**
+     * The pages are queried with the current size of the given {@link AdaptivePageSize} which is tuned with the
+     * latency and the response size of every page.
+     */
+    public <Source extends SourceInstance, Target extends TargetInstance> TargetInstancesPager<Target> queryTargetInstancePages(KG kg, Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, String queryId, DataStage dataStage, int from, AdaptivePageSize pageSize, Map<String, String> queryParameters, Integer trendingThreshold, Map<String, Object> translationContext, int maxConcurrentRequests, ExecutorService executorService) {
+        return new TargetInstancesPager<>((pageFrom, size) -> queryAndTranslateToTargetInstances(kg, translator, queryId, dataStage, pageFrom, size, pageSize, queryParameters, trendingThreshold, translationContext), from, pageSize::get, maxConcurrentRequests, executorService);
+    }
+
+    /**
+     * A failing request (error status or timeout) is not retried with the same size: The page size is reduced and the
+     * requested range is queried in pages of the reduced size instead. Only pages of the minimal size are retried (with
+     * the waiting times of the {@link KG} client in between).
+     */
+    private <Source extends SourceInstance, Target extends TargetInstance> TargetInstancesResult<Target> queryAndTranslateToTargetInstances(KG kg, Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, String queryId, DataStage dataStage, int from, int size, AdaptivePageSize pageSize, Map<String, String> queryParameters, Integer trendingThreshold, Map<String, Object> translationContext) {
+        if (size <= pageSize.getMinSize()) {
+            return queryAndTranslateToTargetInstances(kg, translator, queryId, dataStage, from, size, queryParameters, trendingThreshold, translationContext);
+        }
         logger.info(String.format("Starting to query %d %s from %d", size, translator.getSourceType().getSimpleName(), from));
-        final ResultsOfKG<Source> instanceResults = kg.executeQuery(translator.getResultType(), dataStage, queryId, from, size);
-        TargetInstancesResult<Target> result = new TargetInstancesResult<>();
-        if (instanceResults == null) {
-            logger.info("Was not able to read results for {} from index {} of size {}", translator.getSourceType().getSimpleName(), from, size);
-            result.setTargetInstances(Collections.emptyList());
-            result.setFrom(from);
-            result.setSize(size);
-        } else {
-            Stats stats = getStats(instanceResults, from);
+        final long start = System.currentTimeMillis();
+        try (PageTranslation<Source, Target> translation = new PageTranslation<>(translator, dataStage, trendingThreshold, translationContext)) {
+            final ResultsOfKG<Source> instanceResults = kg.executeQueryWithoutRetries(translator.getSourceType(), dataStage, queryId, from, size, queryParameters, translation);
+            if (instanceResults == null) {
+                return emptyResult(translator, from, size);
+            }
+            //The translation happens while the response is read - only the time waiting for the KG is its latency
+            final long latencyInMs = instanceResults.getResponseWaitingTimeInMs() != null ? instanceResults.getResponseWaitingTimeInMs() : System.currentTimeMillis() - start;
+            pageSize.onSuccess(size, translation.getNumberOfInstances(), latencyInMs, instanceResults.getResponseSizeInBytes());
+            Stats stats = getStats(instanceResults.getTotal(), from, translation.getNumberOfInstances());
             logger.info(String.format("Queried %d %s (%s)", stats.getPageSize(), translator.getSourceType().getSimpleName(), stats.getInfo()));
-            if(instanceResults.getErrors() ==null){
-                instanceResults.setErrors(new ErrorReport());
+            return toTargetInstancesResult(instanceResults, translation);
+        } catch (WebClientException e) {
+            final int reducedSize = Math.min(size - 1, pageSize.onFailure());
+            logger.warn(String.format("Was not able to query %d %s from %d - querying them in pages of %d instead", size, translator.getSourceType().getSimpleName(), from, reducedSize), e);
+            final TargetInstancesResult<Target> result = new TargetInstancesResult<>();
+            result.setTargetInstances(new ArrayList<>());
+            result.setFrom(from);
+            result.setSize(0);
+            for (int pageFrom = from; pageFrom < from + size && (result.getTotal() == null || pageFrom < result.getTotal()); pageFrom += reducedSize) {
+                merge(result, queryAndTranslateToTargetInstances(kg, translator, queryId, dataStage, pageFrom, Math.min(reducedSize, from + size - pageFrom), pageSize, queryParameters, trendingThreshold, translationContext));
+            }
+            return result;
+        }
+    }
+
+    private static <Target> void merge(TargetInstancesResult<Target> result, TargetInstancesResult<Target> page) {
+        result.getTargetInstances().addAll(page.getTargetInstances());
+        result.setSize(result.getSize() + (page.getSize() != null ? page.getSize() : page.getTargetInstances().size()));
+        if (page.getTotal() != null) {
+            result.setTotal(page.getTotal());
+        }
+        if (page.isSkipped()) {
+            result.setSkipped(true);
+        }
+        if (page.getErrors() != null) {
+            if (result.getErrors() == null) {
+                result.setErrors(new ErrorReport());
+            }
+            page.getErrors().forEach((id, errors) -> result.getErrors().computeIfAbsent(id, k -> new ArrayList<>()).addAll(errors));
+        }
+    }
+
+    private <Target extends TargetInstance> TargetInstancesResult<Target> emptyResult(Translator<?, Target, ?> translator, int from, int size) {
+        logger.info("Was not able to read results for {} from index {} of size {}", translator.getSourceType().getSimpleName(), from, size);
+        TargetInstancesResult<Target> result = new TargetInstancesResult<>();
+        result.setTargetInstances(Collections.emptyList());
+        result.setFrom(from);
+        result.setSize(size);
+        result.setSkipped(true);
+        return result;
+    }
+
+    private <Source extends SourceInstance, Target extends TargetInstance> TargetInstancesResult<Target> toTargetInstancesResult(ResultsOfKG<Source> instanceResults, PageTranslation<Source, Target> translation) {
+        TargetInstancesResult<Target> result = new TargetInstancesResult<>();
+        if (instanceResults.getErrors() == null) {
+            instanceResults.setErrors(new ErrorReport());
+        }
+        result.setTargetInstances(translation.getTargetInstances(instanceResults.getErrors()));
+        result.setFrom(instanceResults.getFrom());
+        result.setSize(instanceResults.getSize());
+        result.setTotal(instanceResults.getTotal());
+        if (!instanceResults.getErrors().isEmpty()) {
+            result.setErrors(instanceResults.getErrors());
+        }
+        return result;
+    }
+
+    /**
+     * Collects the translations of the instances of a page. With a {@link #translationParallelism} > 1, the instances
+     * are translated on virtual threads (at most {@link #translationParallelism} at a time). Every instance reports
+     * into its own {@link ErrorReport} - they are merged in the order of the page at the end, so the result is the
+     * same as for the sequential translation.
+     *
+     * Instances requiring DOI citations (see {@link Translator#getDOIs}) or resources (see
+     * {@link Translator#getResourceIds}) are collected in batches of at most {@link #prefetchBatchSize} instances: The
+     * citations of a batch are resolved concurrently while the following instances are read, the resources of the
+     * batch are fetched with a single request and the batch is translated once both are available.
+     */
+    private class PageTranslation<Source extends SourceInstance, Target extends TargetInstance> implements Consumer<Source>, AutoCloseable {
+        private final Translator<Source, Target, ? extends ResultsOfKG<Source>> translator;
+        private final DataStage dataStage;
+        private final Integer trendingThreshold;
+        private final Map<String, Object> translationContext;
+        private final ExecutorService executorService;
+        private final Semaphore permits;
+        private final List<ErrorReport> errorReports = new ArrayList<>();
+        private final List<Future<Target>> translations = new ArrayList<>();
+        private final List<Source> batch = new ArrayList<>();
+        private final List<CompletableFuture<Void>> batchPrefetches = new ArrayList<>();
+        private final Set<String> batchResourceIds = new HashSet<>();
+        private Map<String, Document> batchResources;
+        private int numberOfInstances;
+
+        private PageTranslation(Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, DataStage dataStage, Integer trendingThreshold, Map<String, Object> translationContext) {
+            this.translator = translator;
+            this.dataStage = dataStage;
+            this.trendingThreshold = trendingThreshold;
+            this.translationContext = translationContext != null ? Collections.unmodifiableMap(translationContext) : null;
+            this.executorService = translationParallelism > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+            this.permits = new Semaphore(translationParallelism);
+        }
+
+        @Override
+        public void accept(Source source) {
+            numberOfInstances++;
+            final Set<String> dois = translator.getDOIs(source);
+            final Set<String> resourceIds = translator.getResourceIds(source);
+            if (batch.isEmpty() && dois.isEmpty() && resourceIds.isEmpty()) {
+                translate(source);
+            } else {
+                //The instances are kept in order - once there is a batch, all following instances are added to it
+                batch.add(source);
+                batchPrefetches.add(doiCitationResolver.prefetch(dois));
+                batchResourceIds.addAll(resourceIds);
+                if (batch.size() >= prefetchBatchSize) {
+                    translateBatch();
+                }
             }
-            List<Target> instances = instanceResults.getData().stream().filter(Objects::nonNull).map(s -> {
+        }
+
+        private void translateBatch() {
+            batchResources = fetchResources(batchResourceIds);
+            CompletableFuture.allOf(batchPrefetches.toArray(CompletableFuture[]::new)).join();
+            batch.forEach(this::translate);
+            batch.clear();
+            batchPrefetches.clear();
+            batchResourceIds.clear();
+            batchResources = null;
+        }
+
+        private void translate(Source source) {
+            final ErrorReport errorReport = new ErrorReport();
+            errorReports.add(errorReport);
+            final Map<String, Document> resources = batchResources;
+            if (executorService == null) {
+                translations.add(CompletableFuture.completedFuture(translateInstance(translator, source, dataStage, trendingThreshold, translationContext, resources, errorReport)));
+            } else {
                 try {
-                    List<String> errors = new ArrayList<>();
-                    final Target r = translator.translate(s, dataStage, false, new TranslatorUtils(doiCitationFormatter, esServiceClient, trendingThreshold, translationContext, errors, esHelper));
-                    if(!CollectionUtils.isEmpty(errors)) {
-                        String id = IdUtils.getUUID(r.getId());
-                        if (instanceResults.getErrors().get(id) != null) {
-                            instanceResults.getErrors().get(id).addAll(errors);
-                        } else {
-                            instanceResults.getErrors().put(id, errors);
-                        }
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while translating instances", e);
+                }
+                translations.add(executorService.submit(() -> {
+                    try {
+                        return translateInstance(translator, source, dataStage, trendingThreshold, translationContext, resources, errorReport);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        private int getNumberOfInstances() {
+            return numberOfInstances;
+        }
+
+        private List<Target> getTargetInstances(ErrorReport errors) {
+            translateBatch();
+            try {
+                List<Target> instances = new ArrayList<>(translations.size());
+                for (int i = 0; i < translations.size(); i++) {
+                    final Target target = translations.get(i).get();
+                    errorReports.get(i).forEach((id, e) -> errors.computeIfAbsent(id, k -> new ArrayList<>()).addAll(e));
+                    if (target != null) {
+                        instances.add(target);
                     }
-                    return r;
-                } catch (TranslationException e) {
-                    String id = IdUtils.getUUID(e.getIdentifier());
-                    List<String> errors = instanceResults.getErrors().computeIfAbsent(id, k -> new ArrayList<>());
-                    errors.add(e.getMessage());
-                    return null;
-                } catch (Exception e) {
-                    String id =  IdUtils.getUUID(s.getId());
-                    List<String> errors = instanceResults.getErrors().computeIfAbsent(id, k -> new ArrayList<>());
-                    errors.add(String.format("Unexpected exception: %s", e.getMessage()));
-                    logger.error(String.format("Unexpected exception for instance %s in translation", id), e);
-                    return null;
                 }
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-            result.setTargetInstances(instances);
-            result.setFrom(instanceResults.getFrom());
-            result.setSize(instanceResults.getSize());
-            result.setTotal(instanceResults.getTotal());
-            if (instanceResults.getErrors() != null && !instanceResults.getErrors().isEmpty()) {
-                result.setErrors(instanceResults.getErrors());
+                return instances;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while translating instances", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
             }
         }
-        return result;
+
+        @Override
+        public void close() {
+            if (executorService != null) {
+                translations.forEach(t -> t.cancel(true));
+                executorService.close();
+            }
+        }
+    }
+
+    /**
+     * @return the resources with the given ids (the ids of missing resources are mapped to null) or null if they
+     * couldn't be fetched - the translation then falls back to fetching them one by one
+     */
+    private Map<String, Document> fetchResources(Set<String> ids) {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        try {
+            final Map<String, Document> documents = esServiceClient.getDocumentsByNativeIds(esHelper.getResourcesIndex(), ids);
+            final Map<String, Document> resources = new HashMap<>();
+            ids.forEach(id -> resources.put(id, documents.get(id)));
+            return resources;
+        } catch (WebClientException e) {
+            logger.warn("Was not able to fetch the resources of the batch - they are fetched one by one", e);
+            return null;
+        }
+    }
+
+    private <Source extends SourceInstance, Target extends TargetInstance> Target translateInstance(Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, Source s, DataStage dataStage, Integer trendingThreshold, Map<String, Object> translationContext, Map<String, Document> resources, ErrorReport errorReport) {
+        try {
+            List<String> errors = new ArrayList<>();
+            final Target r = translator.translate(s, dataStage, false, new TranslatorUtils(doiCitationResolver, esServiceClient, trendingThreshold, translationContext, errors, esHelper, resources));
+            if(!CollectionUtils.isEmpty(errors)) {
+                String id = IdUtils.getUUID(r.getId());
+                if (errorReport.get(id) != null) {
+                    errorReport.get(id).addAll(errors);
+                } else {
+                    errorReport.put(id, errors);
+                }
+            }
+            return r;
+        } catch (TranslationException e) {
+            String id = IdUtils.getUUID(e.getIdentifier());
+            List<String> errors = errorReport.computeIfAbsent(id, k -> new ArrayList<>());
+            errors.add(e.getMessage());
+            return null;
+        } catch (Exception e) {
+            String id =  IdUtils.getUUID(s.getId());
+            List<String> errors = errorReport.computeIfAbsent(id, k -> new ArrayList<>());
+            errors.add(String.format("Unexpected exception: %s", e.getMessage()));
+            logger.error(String.format("Unexpected exception for instance %s in translation", id), e);
+            return null;
+        }
     }
 
 
@@ -146,7 +370,7 @@ public class TranslationController {
         if (source == null) {
             return null;
         }
-        final Target translateResult = translator.translate(source, dataStage, true, new TranslatorUtils(doiCitationFormatter, esServiceClient, null, Collections.emptyMap(), null, esHelper));
+        final Target translateResult = translator.translate(source, dataStage, true, new TranslatorUtils(doiCitationResolver, esServiceClient, null, translator.populateTranslationContext(esServiceClient, esHelper, dataStage), null, esHelper, null));
         if (checkReferences) {
             checkReferences(dataStage, useSourceType, translateResult);
         }
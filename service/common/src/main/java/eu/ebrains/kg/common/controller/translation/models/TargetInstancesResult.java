@@ -37,4 +37,8 @@ public class TargetInstancesResult<Target> {
     private Integer from;
     private Integer size;
     private Integer total;
+    /**
+     * The page (or a part of it) couldn't be queried - its instances are missing
+     */
+    private boolean skipped;
 }
@@ -34,6 +34,7 @@ import org.apache.commons.lang3.StringUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class Translator<Source, Target, ListResult extends ResultsOfKG<Source>> extends TranslatorBase {
 
@@ -56,6 +57,29 @@ public abstract class Translator<Source, Target, ListResult extends ResultsOfKG<
         return Collections.emptyMap();
     }
 
+    /**
+     * Called once the given instances have been written to the indexes - allows to keep the state behind the
+     * translation context up to date instead of populating it from scratch.
+     */
+    public void instancesWritten(List<Target> instances, DataStage stage){
+    }
+
+    /**
+     * @return the (absolute) DOIs whose citations are needed to translate the given source - they are resolved
+     * concurrently for a batch of instances before the batch is translated
+     */
+    public Set<String> getDOIs(Source source){
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the ids of the documents of the resources index which are needed to translate the given source - they
+     * are fetched with a single request for a batch of instances and are provided by {@link TranslatorUtils#getResource}
+     */
+    public Set<String> getResourceIds(Source source){
+        return Collections.emptySet();
+    }
+
     public abstract List<String> semanticTypes();
 
     public String getQueryIdByType(String type){
@@ -0,0 +1,281 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation.utils;
+
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.common.utils.IdSet;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * The identifiers of all documents of a stage - used to resolve references. The registry is loaded once (from the
+ * indexes or a snapshot on disk) and then kept up to date by the indexing as documents are written and removed.
+ * Identifiers which a document loses when it is rewritten are only dropped by a {@link #reload(DataStage)} which is why
+ * the complete indexing runs reload it.
+ */
+@Component
+public class IdentifierRegistry {
+
+    private final static Logger logger = LoggerFactory.getLogger(IdentifierRegistry.class);
+    private final static int INITIAL_EXPECTED_SIZE = 100000;
+
+    private final ESServiceClient esServiceClient;
+    private final ESHelper esHelper;
+    private final Path snapshotDirectory;
+    private final Duration snapshotMaxAge;
+    private final boolean offHeap;
+    private final Map<DataStage, Identifiers> identifiersByStage = new ConcurrentHashMap<>();
+
+    public IdentifierRegistry(ESServiceClient esServiceClient, ESHelper esHelper, @Value("${IDENTIFIER_REGISTRY_SNAPSHOT_DIRECTORY:}") String snapshotDirectory, @Value("${IDENTIFIER_REGISTRY_SNAPSHOT_MAX_AGE_IN_MINUTES:1440}") long snapshotMaxAgeInMinutes, @Value("${IDENTIFIER_REGISTRY_OFF_HEAP:false}") boolean offHeap) {
+        this.esServiceClient = esServiceClient;
+        this.esHelper = esHelper;
+        this.snapshotDirectory = StringUtils.isBlank(snapshotDirectory) ? null : Path.of(snapshotDirectory);
+        this.snapshotMaxAge = Duration.ofMinutes(snapshotMaxAgeInMinutes);
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * The identifiers of a stage kept in an {@link IdSet} - the indexing adds identifiers while others resolve
+     * references which is why the access is guarded by a read-write lock.
+     */
+    public static class Identifiers {
+        private final IdSet ids;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Identifiers(boolean offHeap) {
+            this.ids = new IdSet(INITIAL_EXPECTED_SIZE, offHeap);
+        }
+
+        public boolean contains(String identifier) {
+            lock.readLock().lock();
+            try {
+                return ids.contains(identifier);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public void add(String identifier) {
+            lock.writeLock().lock();
+            try {
+                ids.add(identifier);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public void addAll(Collection<String> identifiers) {
+            lock.writeLock().lock();
+            try {
+                ids.addAll(identifiers);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public void removeAll(Collection<String> identifiers) {
+            lock.writeLock().lock();
+            try {
+                ids.removeAll(identifiers);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public int size() {
+            lock.readLock().lock();
+            try {
+                return ids.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            lock.readLock().lock();
+            try {
+                ids.forEachUUID((most, least) -> {
+                    try {
+                        out.writeByte(SNAPSHOT_UUID);
+                        out.writeLong(most);
+                        out.writeLong(least);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                ids.forEachOther(other -> {
+                    try {
+                        out.writeByte(SNAPSHOT_OTHER);
+                        out.writeUTF(other);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeByte(SNAPSHOT_END);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void readFrom(DataInputStream in) throws IOException {
+            lock.writeLock().lock();
+            try {
+                for (byte tag = in.readByte(); tag != SNAPSHOT_END; tag = in.readByte()) {
+                    if (tag == SNAPSHOT_UUID) {
+                        ids.addUUID(in.readLong(), in.readLong());
+                    } else {
+                        ids.add(in.readUTF());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the identifiers of the stage - they are loaded on first access.
+     */
+    public Identifiers getIdentifiers(DataStage stage) {
+        return identifiersByStage.computeIfAbsent(stage, this::load);
+    }
+
+    /**
+     * Reloads the identifiers of the stage from the indexes (e.g. to get rid of the ones of removed documents)
+     */
+    public Identifiers reload(DataStage stage) {
+        final Identifiers identifiers = loadFromIndexes(stage);
+        identifiersByStage.put(stage, identifiers);
+        saveSnapshot(stage);
+        return identifiers;
+    }
+
+    public void addAll(DataStage stage, Collection<String> identifiers) {
+        if (!CollectionUtils.isEmpty(identifiers)) {
+            getIdentifiers(stage).addAll(identifiers);
+        }
+    }
+
+    private Identifiers load(DataStage stage) {
+        final Identifiers fromSnapshot = loadSnapshot(stage);
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        final Identifiers identifiers = loadFromIndexes(stage);
+        writeSnapshot(stage, identifiers);
+        return identifiers;
+    }
+
+    private Identifiers loadFromIndexes(DataStage stage) {
+        final Identifiers identifiers = new Identifiers(offHeap);
+        final String index = esHelper.getIndexesForDocument(stage);
+        try (Stream<Document> documents = esServiceClient.scan(index, Map.of("exists", Map.of("field", "identifier")), List.of("identifier"))) {
+            documents.forEach(document -> {
+                final Object identifier = document.getSource() != null ? document.getSource().get("identifier") : null;
+                if (identifier instanceof List<?> list) {
+                    list.forEach(i -> identifiers.add(i != null ? i.toString() : null));
+                }
+            });
+        }
+        logger.info("Loaded {} identifiers of stage {}", identifiers.size(), stage);
+        return identifiers;
+    }
+
+    /**
+     * Stores the current state of the identifiers of the stage on disk (if a snapshot directory is configured) so a
+     * restart doesn't need to scan the indexes again.
+     */
+    public void saveSnapshot(DataStage stage) {
+        final Identifiers identifiers = identifiersByStage.get(stage);
+        if (identifiers != null) {
+            writeSnapshot(stage, identifiers);
+        }
+    }
+
+    private static final byte SNAPSHOT_END = 0;
+    private static final byte SNAPSHOT_UUID = 1;
+    private static final byte SNAPSHOT_OTHER = 2;
+
+    private Path getSnapshotFile(DataStage stage) {
+        return snapshotDirectory.resolve(String.format("identifiers_%s.bin", stage));
+    }
+
+    private void writeSnapshot(DataStage stage, Identifiers identifiers) {
+        if (snapshotDirectory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(snapshotDirectory);
+            final Path temporaryFile = Files.createTempFile(snapshotDirectory, "identifiers", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeLong(Instant.now().toEpochMilli());
+                identifiers.writeTo(out);
+            }
+            Files.move(temporaryFile, getSnapshotFile(stage), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn(String.format("Was not able to write the snapshot of the identifiers of stage %s", stage), e);
+        }
+    }
+
+    private Identifiers loadSnapshot(DataStage stage) {
+        if (snapshotDirectory == null || !Files.exists(getSnapshotFile(stage))) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(getSnapshotFile(stage))))) {
+            final Instant createdAt = Instant.ofEpochMilli(in.readLong());
+            if (createdAt.plus(snapshotMaxAge).isBefore(Instant.now())) {
+                logger.info("Ignoring the snapshot of the identifiers of stage {} since it is outdated", stage);
+                return null;
+            }
+            final Identifiers identifiers = new Identifiers(offHeap);
+            identifiers.readFrom(in);
+            logger.info("Loaded {} identifiers of stage {} from snapshot", identifiers.size(), stage);
+            return identifiers;
+        } catch (IOException e) {
+            logger.warn(String.format("Was not able to read the snapshot of the identifiers of stage %s", stage), e);
+            return null;
+        }
+    }
+}
@@ -22,16 +22,9 @@
  */
 
 package eu.ebrains.kg.common.controller.translation.utils;
-import eu.ebrains.kg.common.model.DataStage;
-import eu.ebrains.kg.common.model.elasticsearch.Document;
-import eu.ebrains.kg.common.model.elasticsearch.Result;
 import eu.ebrains.kg.common.model.target.TargetInstance;
 import eu.ebrains.kg.common.model.target.TargetInternalReference;
-import eu.ebrains.kg.common.services.ESServiceClient;
-import eu.ebrains.kg.common.utils.ESHelper;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
-import org.springframework.web.reactive.function.BodyInserters;
 
 import java.util.*;
 
@@ -39,70 +32,8 @@ import static eu.ebrains.kg.common.controller.translation.utils.TranslationUtils
 
 @Component
 public class ReferenceResolver {
-    private final ESServiceClient esServiceClient;
-    private final ESHelper esHelper;
 
-    public ReferenceResolver(ESServiceClient esServiceClient, ESHelper esHelper) {
-        this.esServiceClient = esServiceClient;
-        this.esHelper = esHelper;
-    }
-
-    public Set<String> loadAllExistingIdentifiers(DataStage stage) {
-        Set<String> collector = new HashSet<>();
-        doLoadAllExistingIdentifiers(null, esHelper.getIndexesForDocument(stage), collector);
-        return collector;
-    }
-
-    private void doLoadAllExistingIdentifiers(String lastId, String index, Set<String> collector) {
-        final String query = createQueryForLoadingAllIdentifiers(lastId);
-        final Result result = esServiceClient.searchDocuments(index, "hits.hits._source.identifier,hits.hits._id", BodyInserters.fromValue(query));
-        final Result.Hits hits = result.getHits();
-        if (hits != null) {
-            final List<Document> documents = hits.getHits();
-            if (!CollectionUtils.isEmpty(documents)) {
-                documents.forEach(document -> {
-                    final Map<String, Object> docSource = document.getSource();
-                    final Object identifier = docSource.get("identifier");
-                    if(identifier instanceof List){
-                        collector.addAll((List<String>)identifier);
-                    }
-                });
-                final Document lastDocument = documents.get(documents.size() - 1);
-                if(lastDocument!=null){
-                    final String nextId = lastDocument.getId();
-                    if (nextId != null && !nextId.equals(lastId)) {
-                        doLoadAllExistingIdentifiers(nextId, index, collector);
-                    }
-                }
-            }
-        }
-
-
-    }
-
-    private String createQueryForLoadingAllIdentifiers(String searchAfterId) {
-        return String.format("""
-                {
-                  "size": %d,
-                  "_source": ["identifier"],
-                  "sort": [
-                    {"_id": "asc"}
-                  ],%s
-                  "query": {
-                      "exists": {
-                        "field": "identifier"
-                      }
-                   }
-                }
-                """, ESServiceClient.ES_QUERY_SIZE, searchAfterId == null ? "" : String.format("""
-                                
-                  "search_after": [
-                      "%s"
-                  ],
-                """, searchAfterId));
-    }
-
-    public <Target extends TargetInstance> void clearNonResolvableReferences(List<Target> instances, Set<String> existingIdentifiers) {
+    public <Target extends TargetInstance> void clearNonResolvableReferences(List<Target> instances, IdentifierRegistry.Identifiers existingIdentifiers) {
         List<TargetInternalReference> references = new ArrayList<>();
         instances.forEach(i -> collectAllTargetInternalReferences(i, references));
         references.forEach(r -> {
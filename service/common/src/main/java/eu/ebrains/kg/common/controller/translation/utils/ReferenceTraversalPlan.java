@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation.utils;
+
+import eu.ebrains.kg.common.model.target.TargetInternalReference;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * The fields of a class which can (directly or through nested objects, collections or maps) hold a
+ * {@link TargetInternalReference}. A plan is built once per class and cached in a {@link ClassValue}, so walking a
+ * document neither locks nor reflects.
+ */
+class ReferenceTraversalPlan {
+
+    private static final String MODEL_PACKAGE = "eu.ebrains.kg";
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final ReferenceTraversalPlan EMPTY = new ReferenceTraversalPlan(Collections.emptyList());
+
+    private static final ClassValue<ReferenceTraversalPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected ReferenceTraversalPlan computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    private final List<MethodHandle> getters;
+
+    private ReferenceTraversalPlan(List<MethodHandle> getters) {
+        this.getters = getters;
+    }
+
+    static void collect(Object obj, List<TargetInternalReference> collector) {
+        if (obj == null) {
+            return;
+        }
+        if (obj instanceof TargetInternalReference reference) {
+            collector.add(reference);
+        } else if (obj instanceof Collection<?> collection) {
+            for (Object element : collection) {
+                collect(element, collector);
+            }
+        } else if (obj instanceof Map<?, ?> map) {
+            for (Object value : map.values()) {
+                collect(value, collector);
+            }
+        } else {
+            PLANS.get(obj.getClass()).visit(obj, collector);
+        }
+    }
+
+    private void visit(Object obj, List<TargetInternalReference> collector) {
+        for (MethodHandle getter : getters) {
+            final Object value;
+            try {
+                value = getter.invokeExact(obj);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            collect(value, collector);
+        }
+    }
+
+    private static ReferenceTraversalPlan create(Class<?> type) {
+        final List<MethodHandle> getters = new ArrayList<>();
+        for (Field field : getNonStaticNonTransientFields(type)) {
+            if (mayHoldReference(field.getGenericType(), new HashSet<>())) {
+                try {
+                    field.setAccessible(true);
+                    getters.add(MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    throw new IllegalStateException(String.format("Can not access field %s of %s", field.getName(), type.getName()), e);
+                }
+            }
+        }
+        return getters.isEmpty() ? EMPTY : new ReferenceTraversalPlan(List.copyOf(getters));
+    }
+
+    private static List<Field> getNonStaticNonTransientFields(Class<?> type) {
+        final List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && isModelClass(c); c = c.getSuperclass()) {
+            for (Field declaredField : c.getDeclaredFields()) {
+                if (!Modifier.isTransient(declaredField.getModifiers()) && !Modifier.isStatic(declaredField.getModifiers())) {
+                    fields.add(declaredField);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isModelClass(Class<?> type) {
+        return type.getName().startsWith(MODEL_PACKAGE);
+    }
+
+    /**
+     * Decides by the declared type of a field whether its value could lead to a reference. The answer has to be
+     * conservative: only types which can't hold one whatever the runtime class of the value is are excluded.
+     */
+    private static boolean mayHoldReference(Type type, Set<Class<?>> visiting) {
+        if (type instanceof ParameterizedType parameterizedType) {
+            final Class<?> raw = (Class<?>) parameterizedType.getRawType();
+            if (Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw)) {
+                final Type[] arguments = parameterizedType.getActualTypeArguments();
+                return mayHoldReference(arguments[arguments.length - 1], visiting);
+            }
+            return mayHoldReference(raw, visiting);
+        }
+        if (type instanceof Class<?> c) {
+            return mayHoldReference(c, visiting);
+        }
+        // Arrays are not walked into, type variables and wildcards are kept since their bounds don't tell enough
+        return !(type instanceof GenericArrayType);
+    }
+
+    private static boolean mayHoldReference(Class<?> type, Set<Class<?>> visiting) {
+        if (type.isPrimitive() || type.isArray() || type.isEnum()) {
+            return false;
+        }
+        if (TargetInternalReference.class.isAssignableFrom(type) || type.isAssignableFrom(TargetInternalReference.class)
+                || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return true;
+        }
+        if (!Modifier.isFinal(type.getModifiers())) {
+            // A subclass of the declared type might hold references
+            return true;
+        }
+        if (!isModelClass(type) || !visiting.add(type)) {
+            return false;
+        }
+        return getNonStaticNonTransientFields(type).stream().anyMatch(f -> mayHoldReference(f.getGenericType(), visiting));
+    }
+}
@@ -32,72 +32,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.*;
+import java.util.List;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class TranslationUtils {
     private final static Logger logger = LoggerFactory.getLogger(TranslationUtils.class);
-    private final static Map<Class<?>, Set<Field>> nonStaticTransientFields = new HashMap<>();
 
     public static <E> Stats getStats(ResultsOfKG<E> result, int from) {
-        int pageSize = CollectionUtils.isEmpty(result.getData()) ? 0 : result.getData().size();
-        int cumulatedSize = from + pageSize;
-        String percentage = (CollectionUtils.isEmpty(result.getData()) || result.getTotal() == null || result.getTotal() == 0) ? "unknown%" : String.format("%d%s", Math.round(100.0 * cumulatedSize / result.getTotal()), "%");
-        String info = String.format("%d out of %d, %s", cumulatedSize, result.getTotal(), percentage);
-        return new Stats(pageSize, info);
-    }
-
-    private synchronized static Set<Field> getNonStaticNonTransientFields(Class<?> clazz) {
-        Set<Field> fields = nonStaticTransientFields.get(clazz);
-        if (fields == null) {
-            fields = new HashSet<>();
-            collectAllNonStaticNonTransientFields(clazz, fields);
-            nonStaticTransientFields.put(clazz, fields);
-        }
-        return fields;
+        return getStats(result.getTotal(), from, CollectionUtils.isEmpty(result.getData()) ? 0 : result.getData().size());
     }
 
-
-    private static void collectAllNonStaticNonTransientFields(Class<?> clazz, Set<Field> collector) {
-        if (clazz.getCanonicalName().startsWith("eu.ebrains.kg")) {
-            final Field[] declaredFields = clazz.getDeclaredFields();
-            for (Field declaredField : declaredFields) {
-                if (!Modifier.isTransient(declaredField.getModifiers()) && !Modifier.isStatic(declaredField.getModifiers())) {
-                    collector.add(declaredField);
-                }
-            }
-            collectAllNonStaticNonTransientFields(clazz.getSuperclass(), collector);
-        }
+    public static Stats getStats(Integer total, int from, int pageSize) {
+        int cumulatedSize = from + pageSize;
+        String percentage = (pageSize == 0 || total == null || total == 0) ? "unknown%" : String.format("%d%s", Math.round(100.0 * cumulatedSize / total), "%");
+        String info = String.format("%d out of %d, %s", cumulatedSize, total, percentage);
+        return new Stats(pageSize, info);
     }
 
     public static void collectAllTargetInternalReferences(Object obj, List<TargetInternalReference> collector) {
-        if (obj == null) {
-            return;
-        }
-        if (obj instanceof TargetInternalReference) {
-            collector.add((TargetInternalReference) obj);
-            return;
-        }
-        getNonStaticNonTransientFields(obj.getClass()).forEach(f -> {
-            try {
-                f.setAccessible(true);
-                Object value = f.get(obj);
-                if (value != null) {
-                    if (value instanceof Collection) {
-                        ((Collection<?>) value).forEach(c -> collectAllTargetInternalReferences(c, collector));
-                    } else if (value instanceof Map) {
-                        ((Map<?, ?>) value).forEach((k, v) -> collectAllTargetInternalReferences(v, collector));
-                    } else {
-                        collectAllTargetInternalReferences(value, collector);
-                    }
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
-        });
-
+        ReferenceTraversalPlan.collect(obj, collector);
     }
 
 }
@@ -53,5 +53,7 @@ public class Document {
 
     @JsonProperty("_score")
     private Double score;
+
+    private List<Object> sort;
 }
 
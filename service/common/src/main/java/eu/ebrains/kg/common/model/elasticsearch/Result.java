@@ -23,6 +23,7 @@
 
 package eu.ebrains.kg.common.model.elasticsearch;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -33,6 +34,9 @@ import java.util.Map;
 @Setter
 public class Result {
 
+    @JsonProperty("pit_id")
+    private String pitId;
+
     private Hits hits;
     private Map<String, Aggregation> aggregations;
     private Map<String, List<Suggestion>> suggest;
@@ -23,6 +23,7 @@
 
 package eu.ebrains.kg.common.model.source;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import eu.ebrains.kg.common.model.ErrorReport;
 import lombok.Getter;
 import lombok.Setter;
@@ -50,6 +51,16 @@ public class ResultsOfKG<E>{
     private Integer size;
     private Integer from;
     private ErrorReport errors;
+    /**
+     * The number of bytes of the response (only known for streamed queries)
+     */
+    @JsonIgnore
+    private Long responseSizeInBytes;
+    /**
+     * The time spent waiting for the response without the time spent processing it (only known for streamed queries)
+     */
+    @JsonIgnore
+    private Long responseWaitingTimeInMs;
 
 
 }
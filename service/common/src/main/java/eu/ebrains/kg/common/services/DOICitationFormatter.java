@@ -23,6 +23,9 @@
 
 package eu.ebrains.kg.common.services;
 
+import eu.ebrains.kg.common.services.resilience.CircuitBreakerOpenException;
+import eu.ebrains.kg.common.services.resilience.HttpResilience;
+import io.netty.channel.ChannelOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,21 +36,26 @@ import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.netty.http.client.HttpClient;
 
+import java.time.Duration;
+
 @Component
 public class DOICitationFormatter {
 
     private final boolean resolveDOIs;
 
-    public DOICitationFormatter(@Value("${RESOLVE_DOIS:true}") boolean resolveDOIs) {
+    private final WebClient webClient;
+
+    public DOICitationFormatter(@Value("${RESOLVE_DOIS:true}") boolean resolveDOIs, HttpResilience httpResilience, @Value("${DOI_RESPONSE_TIMEOUT_IN_SECONDS:10}") long responseTimeoutInSeconds, @Value("${DOI_MAX_RETRIES:1}") int maxRetries, @Value("${DOI_CONNECT_TIMEOUT_IN_SECONDS:5}") int connectTimeoutInSeconds) {
         this.resolveDOIs = resolveDOIs;
+        this.webClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(
+                HttpClient.create().followRedirect(true).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutInSeconds * 1000)
+        )).filter(httpResilience.filter("doi", Duration.ofSeconds(responseTimeoutInSeconds), maxRetries)).build();
     }
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final WebClient webClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(
-            HttpClient.create().followRedirect(true)
-    )).build();
 
     @Cacheable(value = "doiCitation", unless = "#result == null", key = "#doi.concat('-').concat(#style).concat(#contentType)")
     public String getDOICitation(String doi, String style, String contentType) {
@@ -74,6 +82,19 @@ public class DOICitationFormatter {
         return webClient.get().uri(String.format("https://api.datacite.org/dois/%s?style=%s", doiOnly, style)).header("Accept", String.format("%s", contentType)).retrieve().bodyToMono(String.class).block();
     }
 
+    /**
+     * The DOI (or the requested format) doesn't exist - in contrast to a timeout, a server error or too many requests,
+     * the same request will fail the next time as well.
+     */
+    private static boolean isUnresolvable(WebClientResponseException e) {
+        return e.getStatusCode().is4xxClientError() && e.getStatusCode().value() != 408 && e.getStatusCode().value() != 429;
+    }
+
+    /**
+     * @return the citation or null if the DOI can't be resolved
+     * @throws WebClientException           if doi.org is not available (e.g. a timeout or a server error)
+     * @throws CircuitBreakerOpenException  if doi.org has been failing recently
+     */
     private String doGetDOICitation(String doi, String style, String contentType) {
         if (resolveDOIs) {
             String value = null;
@@ -81,7 +102,7 @@ public class DOICitationFormatter {
                 //Workaround to fix the datacite issues about citation formatting
                 try {
                     value = getDOICitationViaDataciteAPI(doi, style, contentType);
-                } catch (WebClientException e) {
+                } catch (WebClientException | CircuitBreakerOpenException e) {
                     logger.warn("Wasn't able to resolve DOI %s via datacite - trying by contentType negotiation");
                 }
             }
@@ -89,8 +110,11 @@ public class DOICitationFormatter {
                 try {
                     logger.info("Doi not present in the cache - fetching from doi.org.");
                     value = webClient.get().uri(doi).header("Accept", String.format("%s; style=%s", contentType, style)).retrieve().bodyToMono(String.class).block();
-                } catch (WebClientException e) {
-                    return null;
+                } catch (WebClientResponseException e) {
+                    if (isUnresolvable(e)) {
+                        return null;
+                    }
+                    throw e;
                 }
             }
             return value != null ? value.trim() : null;
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.services;
+
+import eu.ebrains.kg.common.services.resilience.CircuitBreakerOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resolves the citations of DOIs with the (cached) {@link DOICitationFormatter}:
+ * <ul>
+ *     <li>Concurrent requests for the same citation are coalesced into one lookup</li>
+ *     <li>DOIs which can't be resolved (e.g. because they don't exist) are not looked up again until the configured
+ *     TTL is over - if doi.org is not available, the DOI is looked up again the next time</li>
+ *     <li>The citations of many DOIs can be prefetched concurrently - at most the configured number of lookups run
+ *     at the same time</li>
+ * </ul>
+ */
+@Component
+public class DOICitationResolver {
+
+    public static final String DEFAULT_STYLE = "apa";
+    public static final String DEFAULT_CONTENT_TYPE = "text/x-bibliography";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final DOICitationFormatter doiCitationFormatter;
+    private final Semaphore lookups;
+    private final Duration failureTTL;
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Instant> failures = new ConcurrentHashMap<>();
+
+    public DOICitationResolver(DOICitationFormatter doiCitationFormatter, @Value("${DOI_MAX_CONCURRENT_LOOKUPS:8}") int maxConcurrentLookups, @Value("${DOI_FAILURE_TTL_IN_MINUTES:360}") long failureTTLInMinutes) {
+        this.doiCitationFormatter = doiCitationFormatter;
+        this.lookups = new Semaphore(Math.max(1, maxConcurrentLookups));
+        this.failureTTL = Duration.ofMinutes(failureTTLInMinutes);
+    }
+
+    private static String getKey(String doi, String style, String contentType) {
+        return String.format("%s-%s-%s", doi, style, contentType);
+    }
+
+    public String getCitation(String doi) {
+        return getCitation(doi, DEFAULT_STYLE, DEFAULT_CONTENT_TYPE);
+    }
+
+    /**
+     * @return the citation or null if the DOI could not be resolved (now or within the failure TTL)
+     */
+    public String getCitation(String doi, String style, String contentType) {
+        final String key = getKey(doi, style, contentType);
+        final Instant failedAt = failures.get(key);
+        if (failedAt != null) {
+            if (failedAt.plus(failureTTL).isAfter(Instant.now())) {
+                return null;
+            }
+            failures.remove(key, failedAt);
+        }
+        final CompletableFuture<String> lookup = new CompletableFuture<>();
+        final CompletableFuture<String> existingLookup = inFlight.putIfAbsent(key, lookup);
+        if (existingLookup != null) {
+            return existingLookup.join();
+        }
+        String citation = null;
+        boolean unresolvable = false;
+        try {
+            lookups.acquire();
+            try {
+                citation = doiCitationFormatter.getDOICitation(doi, style, contentType);
+                unresolvable = citation == null;
+            } catch (WebClientException | CircuitBreakerOpenException e) {
+                logger.warn("Was not able to look up the citation of DOI {} - {}", doi, e.getMessage());
+            } finally {
+                lookups.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //A failed or interrupted lookup says nothing about the DOI - it's looked up again the next time
+            if (unresolvable) {
+                failures.put(key, Instant.now());
+            }
+            lookup.complete(citation);
+            inFlight.remove(key, lookup);
+        }
+        return citation;
+    }
+
+    /**
+     * Starts to resolve the citations of the given DOIs (in the default style) in the background
+     *
+     * @return a future which is completed once all of them are resolved (or have failed)
+     */
+    public CompletableFuture<Void> prefetch(Collection<String> dois) {
+        if (dois == null || dois.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(dois.stream().distinct().map(doi -> CompletableFuture.runAsync(() -> getCitation(doi), executorService).exceptionally(e -> null)).toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Looks up the citation again - regardless of the cache or a previous failure
+     */
+    public String refresh(String doi, String style, String contentType) {
+        failures.remove(getKey(doi, style, contentType));
+        try {
+            return doiCitationFormatter.refreshDOICitation(doi, style, contentType);
+        } catch (WebClientException | CircuitBreakerOpenException e) {
+            logger.warn("Was not able to refresh the citation of DOI {} - {}", doi, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Wipes the cached citations and forgets about the DOIs which could not be resolved
+     */
+    public void evictAll() {
+        failures.clear();
+        doiCitationFormatter.evictAll();
+    }
+}
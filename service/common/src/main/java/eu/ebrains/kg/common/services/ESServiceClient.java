@@ -24,8 +24,9 @@
 package eu.ebrains.kg.common.services;
 
 import eu.ebrains.kg.common.model.elasticsearch.Document;
+import eu.ebrains.kg.common.model.elasticsearch.MultiGetResult;
 import eu.ebrains.kg.common.model.elasticsearch.Result;
-import eu.ebrains.kg.common.utils.MetaModelUtils;
+import eu.ebrains.kg.common.services.resilience.HttpResilience;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
@@ -33,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -42,10 +44,15 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @SuppressWarnings("java:S1192")
 @Component
@@ -53,9 +60,15 @@ public class ESServiceClient {
 
     public final static Integer ES_QUERY_SIZE = 10000;
 
+    private final static String SCAN_KEEP_ALIVE = "1m";
+
+    /**
+     * The response timeout of requests which are known to take long (e.g. a force merge)
+     */
+    private final static Duration LONG_RUNNING_REQUEST_TIMEOUT = Duration.ofHours(1);
+
     private final static String QUERY = "query";
 
-    private final static String INDEX = "index";
 
     private final static String IDENTIFIER = "identifier";
 
@@ -65,6 +78,8 @@ public class ESServiceClient {
 
     private final String elasticSearchEndpoint;
 
+    private final int scanSlices;
+
     private static String metricsQuery(int size) {
         return "{\n" +
                 "  \"fields\": [\n" +
@@ -78,9 +93,10 @@ public class ESServiceClient {
                 "}";
     }
 
-    public ESServiceClient(WebClient webClient, @Value("${es.endpoint}") String elasticSearchEndpoint) {
-        this.webClient = webClient;
+    public ESServiceClient(WebClient webClient, @Value("${es.endpoint}") String elasticSearchEndpoint, @Value("${ES_SCAN_SLICES:2}") int scanSlices, HttpResilience httpResilience, @Value("${ES_RESPONSE_TIMEOUT_IN_SECONDS:60}") long responseTimeoutInSeconds, @Value("${http.client.interactive:false}") boolean interactive) {
+        this.webClient = webClient.mutate().filter(interactive ? httpResilience.interactiveFilter("elasticsearch") : httpResilience.filter("elasticsearch", Duration.ofSeconds(responseTimeoutInSeconds))).build();
         this.elasticSearchEndpoint = elasticSearchEndpoint;
+        this.scanSlices = Math.max(scanSlices, 1);
     }
 
     private String getQuery(String id) {
@@ -102,41 +118,6 @@ public class ESServiceClient {
     }
 
 
-    private String getPaginatedQueryForSitemap(String id, Set<String> relevantTypes) {
-        final String types = String.join(", ", relevantTypes.stream().filter(r -> r.matches("[a-zA-Z()\\d ]*")).map(r -> String.format("\"%s\"", r)).collect(Collectors.toSet()));
-        if (id == null) {
-            return String.format("""
-                    {
-                     "size": %d,
-                     "sort": [
-                        {"_id": "asc"}
-                     ],
-                     "query": {
-                        "terms":{
-                            "type.value":[%s]
-                        }
-                     },
-                     "_source": false
-                    }""", ES_QUERY_SIZE, types);
-        }
-        return String.format("""
-                {
-                 "size": %d,
-                 "sort": [
-                    {"_id": "asc"}
-                  ],
-                  "search_after": [
-                      "%s"
-                   ],
-                   "query": {
-                        "terms":{
-                            "type.value":[%s]
-                        }
-                     },
-                     "_source": false
-                }""", ES_QUERY_SIZE, id, relevantTypes);
-    }
-
     private String getAgg(String field) {
         if (StringUtils.isBlank(field)) {
             return null;
@@ -221,43 +202,6 @@ public class ESServiceClient {
         return "{\n" + StringUtils.join(list, ",\n ") + "\n}";
     }
 
-    private String getPaginatedFilesQuery(UUID fileRepositoryId, UUID searchAfter, int size, String format, String groupingType) {
-
-        String sizeValue = String.format("%d", size);
-
-        String sortValue =
-                """
-                        [
-                            {"_id": "asc"}
-                        ]""";
-
-        String searchAfterValue = "";
-        if (searchAfter != null) {
-            searchAfterValue = String.format(
-                    """
-                            [
-                              "%s"
-                            ]""".indent(2), searchAfter);
-        }
-
-        Map<String, String> terms = Map.of(
-                "fileRepository", fileRepositoryId.toString(),
-                "format.value.keyword", format,
-                "groupingTypes.name.keyword", groupingType
-        );
-        String queryValue = getQuery(terms);
-
-        Map<String, String> parameters = Map.of(
-                "size", sizeValue,
-                "sort", sortValue,
-                "search_after", searchAfterValue,
-                QUERY, queryValue,
-                "track_total_hits", "true"
-        );
-
-        return getPayload(parameters);
-    }
-
     private String getAggregationsQuery(UUID fileRepositoryId, Map<String, String> aggs) {
 
         String aggsValue = getAggs(aggs);
@@ -276,48 +220,6 @@ public class ESServiceClient {
         return getPayload(parameters);
     }
 
-    private String getIdsOfPaginatedQuery(String id, String type) {
-        if (id == null) {
-            return String.format("""
-                    {
-                     "size": %d,
-                     "sort": [
-                        {"_id": "asc"}
-                     ],
-                      "query": {
-                        "bool": {
-                          "must": {
-                              "term": {
-                                "type.value": "%s"
-                              }
-                            }
-                        }
-                      },
-                     "_source": "false"
-                    }""", ES_QUERY_SIZE, type);
-        }
-        return String.format("""
-                {
-                 "size": %d,
-                 "sort": [
-                    {"_id": "asc"}
-                  ],
-                  "search_after": [
-                      "%s"
-                  ],
-                  "query": {
-                    "bool": {
-                      "must": {
-                          "term": {
-                            "type.value": "%s"
-                          }
-                        }
-                    }
-                  },
-                 "_source": "false"
-                }""", ES_QUERY_SIZE, id, type);
-    }
-
     @Getter
     @Setter
     public static class ESCountResult {
@@ -335,9 +237,41 @@ public class ESServiceClient {
 
     }
 
+    /**
+     * @return the documents with the given ids (by id) - documents which don't exist are not contained in the result.
+     */
+    public Map<String, Document> getDocumentsByNativeIds(String index, Collection<String> ids) {
+        return getDocumentsByNativeIds(index, ids, null);
+    }
+
+    /**
+     * @param sourceFields the fields of the _source to return - null for the whole _source
+     */
+    public Map<String, Document> getDocumentsByNativeIds(String index, Collection<String> ids, List<String> sourceFields) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            final MultiGetResult result = webClient.post()
+                    .uri(String.format("%s/%s/_mget?filter_path=docs._id,docs._source%s", elasticSearchEndpoint, index, sourceFields == null ? "" : String.format("&_source_includes=%s", String.join(",", sourceFields))))
+                    .attribute(HttpResilience.IDEMPOTENT, true)
+                    .body(BodyInserters.fromValue(Map.of("ids", ids)))
+                    .retrieve()
+                    .bodyToMono(MultiGetResult.class)
+                    .block();
+            if (result == null || result.getDocs() == null) {
+                return Collections.emptyMap();
+            }
+            return result.getDocs().stream().filter(d -> d.getSource() != null).collect(Collectors.toMap(Document::getId, d -> d, (a, b) -> a));
+        } catch (WebClientResponseException.NotFound exception) {
+            return Collections.emptyMap();
+        }
+    }
+
     public Document getDocument(String index, String id) {
         Result result = webClient.post()
                 .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
+                .attribute(HttpResilience.IDEMPOTENT, true)
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .body(BodyInserters.fromValue(getQuery(id)))
                 .retrieve()
@@ -357,54 +291,8 @@ public class ESServiceClient {
         return doc;
     }
 
-    public List<Document> getDocumentsForSitemap(String index, Set<String> relevantTypes) {
-        List<Document> result = new ArrayList<>();
-        String searchAfter = null;
-        boolean continueSearch = true;
-        while (continueSearch) {
-            Result documents = getPaginatedDocumentsForSitemap(index, searchAfter, relevantTypes);
-            if (documents != null && documents.getHits() != null) {
-                List<Document> hits = documents.getHits().getHits();
-                result.addAll(hits);
-                searchAfter = hits.size() < ES_QUERY_SIZE ? null : hits.get(hits.size() - 1).getId();
-                continueSearch = searchAfter != null;
-            } else {
-                searchAfter = null;
-                continueSearch = false;
-            }
-        }
-        return result;
-    }
-
-    public List<String> getDocumentIds(String index, Class<?> type) {
-        List<String> result = new ArrayList<>();
-        String searchAfter = null;
-        boolean continueSearch = true;
-        while (continueSearch) {
-            Result documents = getPaginatedDocumentIds(index, searchAfter, type);
-            if (documents!=null && documents.getHits() != null) {
-                List<Document> hits = documents.getHits().getHits();
-                hits.forEach(hit -> result.add(hit.getId()));
-                searchAfter = hits.size() < ES_QUERY_SIZE ? null : hits.get(hits.size() - 1).getId();
-                continueSearch = searchAfter != null;
-            } else {
-                searchAfter = null;
-                continueSearch = false;
-            }
-        }
-        return result;
-    }
-
-
-    private Result getPaginatedDocumentsForSitemap(String index, String searchAfter, Set<String> relevantTypes) {
-        String paginatedQuery = getPaginatedQueryForSitemap(searchAfter, relevantTypes);
-        return webClient.post()
-                .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
-                .body(BodyInserters.fromValue(paginatedQuery))
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
-                .retrieve()
-                .bodyToMono(Result.class)
-                .block();
+    public Stream<Document> getDocumentsForSitemap(String index, Set<String> relevantTypes) {
+        return scan(index, Map.of("terms", Map.of("type.value", relevantTypes)), Collections.emptyList());
     }
 
     public Result getFilesAggregationsFromRepo(String index, UUID fileRepositoryId, Map<String, String> aggs) {
@@ -412,6 +300,7 @@ public class ESServiceClient {
         try {
             return webClient.post()
                     .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
+                    .attribute(HttpResilience.IDEMPOTENT, true)
                     .body(BodyInserters.fromValue(query))
                     .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
                     .retrieve()
@@ -426,34 +315,121 @@ public class ESServiceClient {
         }
     }
 
-    public Result getFilesFromRepo(String index, UUID fileRepositoryId, UUID searchAfter, int size, String format, String groupingType) {
-        String paginatedQuery = getPaginatedFilesQuery(fileRepositoryId, searchAfter, size, format, groupingType);
-        try {
-            return webClient.post()
-                    .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
-                    .body(BodyInserters.fromValue(paginatedQuery))
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
-                    .retrieve()
-                    .bodyToMono(Result.class)
-                    .block();
-        } catch (WebClientResponseException e) {
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                return null;
-            } else {
-                throw e;
-            }
+    public Stream<Document> getFilesFromRepo(String index, UUID fileRepositoryId, String format, String groupingType) {
+        final List<Map<String, Object>> terms = new ArrayList<>();
+        terms.add(Map.of("term", Map.of("fileRepository", fileRepositoryId.toString())));
+        if (StringUtils.isNotBlank(format)) {
+            terms.add(Map.of("term", Map.of("format.value.keyword", format)));
+        }
+        if (StringUtils.isNotBlank(groupingType)) {
+            terms.add(Map.of("term", Map.of("groupingTypes.name.keyword", groupingType)));
         }
+        final Map<String, Object> query = Map.of("bool", Map.of("must", terms));
+        return searchFilesPage(index, query, null)
+                .expand(hits -> hits.size() < ES_QUERY_SIZE ? Mono.empty() : searchFilesPage(index, query, hits.getLast().getSort()))
+                .flatMapIterable(hits -> hits)
+                .toStream();
     }
 
-    private Result getPaginatedDocumentIds(String index, String searchAfter, Class<?> type) {
-        String paginatedQuery = getIdsOfPaginatedQuery(searchAfter, MetaModelUtils.getNameForClass(type));
+    /**
+     * The files are paged by id (search_after) so they are returned in a stable order - without a point in time,
+     * which isn't worth opening for the request of a single user.
+     */
+    private Mono<List<Document>> searchFilesPage(String index, Map<String, Object> query, List<Object> searchAfter) {
+        final Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("size", ES_QUERY_SIZE);
+        payload.put("sort", List.of(Map.of("_id", "asc")));
+        payload.put(QUERY, query);
+        if (searchAfter != null) {
+            payload.put("search_after", searchAfter);
+        }
         return webClient.post()
-                .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
-                .body(BodyInserters.fromValue(paginatedQuery))
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                .uri(String.format("%s/%s/_search?filter_path=hits.hits._id,hits.hits._source,hits.hits.sort", elasticSearchEndpoint, index))
+                .attribute(HttpResilience.IDEMPOTENT, true)
+                .body(BodyInserters.fromValue(payload))
                 .retrieve()
                 .bodyToMono(Result.class)
-                .block();
+                .map(ESServiceClient::getHits)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
+    }
+
+    /**
+     * Scans all documents of the index (or index pattern) matching the query. The documents are read lazily from a
+     * point in time (a consistent view of the index) in parallel slices, the responses trimmed to the needed fields.
+     * The returned stream has to be closed to release the point in time if it is not consumed entirely.
+     *
+     * @param query        the query clause or null to scan all documents
+     * @param sourceFields the fields of the _source to return - null for the whole _source, an empty list for none
+     */
+    public Stream<Document> scan(String index, Map<String, Object> query, List<String> sourceFields) {
+        return Flux.usingWhen(openPointInTime(index),
+                        pointInTime -> Flux.merge(Flux.range(0, scanSlices).map(slice -> scanSlice(pointInTime, query, sourceFields, slice)), scanSlices),
+                        this::closePointInTime)
+                .toStream();
+    }
+
+    private Flux<Document> scanSlice(String pointInTime, Map<String, Object> query, List<String> sourceFields, int slice) {
+        return searchPage(pointInTime, query, sourceFields, slice, null)
+                .expand(result -> {
+                    final List<Document> hits = getHits(result);
+                    if (hits.size() < ES_QUERY_SIZE) {
+                        return Mono.empty();
+                    }
+                    return searchPage(result.getPitId() != null ? result.getPitId() : pointInTime, query, sourceFields, slice, hits.getLast().getSort());
+                })
+                .flatMapIterable(ESServiceClient::getHits);
+    }
+
+    private static List<Document> getHits(Result result) {
+        return result.getHits() == null || result.getHits().getHits() == null ? Collections.emptyList() : result.getHits().getHits();
+    }
+
+    private Mono<Result> searchPage(String pointInTime, Map<String, Object> query, List<String> sourceFields, int slice, List<Object> searchAfter) {
+        final Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("size", ES_QUERY_SIZE);
+        payload.put("pit", Map.of("id", pointInTime, "keep_alive", SCAN_KEEP_ALIVE));
+        //The most efficient sort order if the order doesn't matter
+        payload.put("sort", List.of(Map.of("_shard_doc", "asc")));
+        if (sourceFields != null) {
+            payload.put("_source", sourceFields.isEmpty() ? false : sourceFields);
+        }
+        if (query != null) {
+            payload.put(QUERY, query);
+        }
+        if (scanSlices > 1) {
+            payload.put("slice", Map.of("id", slice, "max", scanSlices));
+        }
+        if (searchAfter != null) {
+            payload.put("search_after", searchAfter);
+        }
+        return webClient.post()
+                .uri(String.format("%s/_search?filter_path=pit_id,hits.hits._id,hits.hits._source,hits.hits.sort", elasticSearchEndpoint))
+                .attribute(HttpResilience.IDEMPOTENT, true)
+                .body(BodyInserters.fromValue(payload))
+                .retrieve()
+                .bodyToMono(Result.class);
+    }
+
+    private Mono<String> openPointInTime(String index) {
+        return webClient.post()
+                .uri(String.format("%s/%s/_pit?keep_alive=%s", elasticSearchEndpoint, index, SCAN_KEEP_ALIVE))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .mapNotNull(result -> (String) result.get("id"))
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
+    }
+
+    private Mono<Void> closePointInTime(String pointInTime) {
+        return webClient.method(HttpMethod.DELETE)
+                .uri(String.format("%s/_pit", elasticSearchEndpoint))
+                .body(BodyInserters.fromValue(Map.of("id", pointInTime)))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorResume(e -> {
+                    //The point in time expires on its own
+                    logger.warn("Was not able to close the point in time of a scan", e);
+                    return Mono.empty();
+                });
     }
 
     public Result searchDocuments(String index, Map<String, Object> payload) {
@@ -463,6 +439,7 @@ public class ESServiceClient {
     public Result searchDocuments(String index, String filterPath, BodyInserter<?, ? super ClientHttpRequest> payload) {
         return webClient.post()
                 .uri(String.format("%s/%s/_search%s", elasticSearchEndpoint, index, filterPath == null ? "" : String.format("?filter_path=%s", filterPath)))
+                .attribute(HttpResilience.IDEMPOTENT, true)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(payload)
                 .retrieve()
@@ -478,10 +455,32 @@ public class ESServiceClient {
                 .block();
     }
 
-    public void reindex(String source, String target) {
-        final Map<String, Map<String, String>> payload = Map.of("source", Map.of(INDEX, source), "dest", Map.of(INDEX, target));
-        webClient.post().uri(String.format("%s/_reindex", elasticSearchEndpoint))
-                .body(BodyInserters.fromValue(payload)).retrieve().bodyToMono(Void.class).block();
+    /**
+     * @return the names of the (physical) indexes the given alias points to or an empty set if there is no such alias
+     */
+    public Set<String> getIndexesOfAlias(String alias) {
+        try {
+            final Map<?, ?> result = webClient.get()
+                    .uri(String.format("%s/_alias/%s", elasticSearchEndpoint, alias))
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block();
+            return result == null ? Collections.emptySet() : result.keySet().stream().map(Object::toString).collect(Collectors.toSet());
+        } catch (WebClientResponseException.NotFound exception) {
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Applies the given alias actions (add, remove, remove_index) atomically
+     */
+    public void updateAliases(List<Map<String, Object>> actions) {
+        webClient.post()
+                .uri(String.format("%s/_aliases", elasticSearchEndpoint))
+                .body(BodyInserters.fromValue(Map.of("actions", actions)))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .block();
     }
 
     public boolean checkIfIndexExists(String index) {
@@ -505,33 +504,166 @@ public class ESServiceClient {
                 .block();
     }
 
-    public void updateIndex(String index, String operations) {
-        Map result = webClient.post()
-                .uri(String.format("%s/%s/_bulk", elasticSearchEndpoint, index))
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
-                .body(BodyInserters.fromValue(operations))
+    /**
+     * @return the value of the given (top-level) field of the _source of the documents with the given ids - documents which don't exist
+     * (or don't have the field) are not contained in the result.
+     */
+    public Map<String, String> getSourceFieldOfDocuments(String index, Collection<String> ids, String field) {
+        try {
+            final Map<?, ?> result = webClient.post()
+                    .uri(String.format("%s/%s/_mget?_source_includes=%s&filter_path=docs._id,docs._source", elasticSearchEndpoint, index, field))
+                    .attribute(HttpResilience.IDEMPOTENT, true)
+                    .body(BodyInserters.fromValue(Map.of("ids", ids)))
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block();
+            final Map<String, String> values = new HashMap<>();
+            if (result != null && result.get("docs") instanceof List<?> docs) {
+                for (Object doc : docs) {
+                    if (doc instanceof Map<?, ?> d && d.get("_source") instanceof Map<?, ?> source && source.get(field) != null) {
+                        values.put((String) d.get("_id"), source.get(field).toString());
+                    }
+                }
+            }
+            return values;
+        } catch (WebClientResponseException.NotFound exception) {
+            return Collections.emptyMap();
+        }
+    }
+
+    public void addMappingProperties(String index, Map<String, Object> properties) {
+        webClient.put()
+                .uri(String.format("%s/%s/_mapping", elasticSearchEndpoint, index))
+                .body(BodyInserters.fromValue(Map.of("properties", properties)))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .block();
+    }
+
+    public void refresh(String index) {
+        webClient.post()
+                .uri(String.format("%s/%s/_refresh", elasticSearchEndpoint, index))
+                .attribute(HttpResilience.IDEMPOTENT, true)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .block();
+    }
+
+    /**
+     * Starts a sliced _delete_by_query as a task of Elasticsearch (documents which have been changed in the meantime are skipped)
+     *
+     * @return the id of the task
+     */
+    public String startDeleteByQuery(String index, Map<String, Object> query) {
+        final Map<?, ?> result = webClient.post()
+                .uri(String.format("%s/%s/_delete_by_query?slices=auto&conflicts=proceed&wait_for_completion=false", elasticSearchEndpoint, index))
+                .body(BodyInserters.fromValue(Map.of("query", query)))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
+        if (result == null || result.get("task") == null) {
+            throw new RuntimeException(String.format("Was not able to start the deletion in index %s", index));
+        }
+        return result.get("task").toString();
+    }
+
+    public Map<?, ?> getTask(String taskId) {
+        return webClient.get()
+                .uri(String.format("%s/_tasks/%s", elasticSearchEndpoint, taskId))
                 .retrieve()
                 .bodyToMono(Map.class)
                 .block();
+    }
+
+    /**
+     * Cancels the task - a failure is only logged since the task might have finished in the meantime
+     */
+    public void cancelTask(String taskId) {
+        try {
+            webClient.post()
+                    .uri(String.format("%s/_tasks/%s/_cancel", elasticSearchEndpoint, taskId))
+                    .retrieve()
+                    .bodyToMono(Void.class)
+                    .block();
+        } catch (WebClientException e) {
+            logger.warn(String.format("Was not able to cancel the task %s", taskId), e);
+        }
+    }
+
+    public void updateIndexSettings(String index, Map<String, Object> settings) {
+        webClient.put()
+                .uri(String.format("%s/%s/_settings", elasticSearchEndpoint, index))
+                .body(BodyInserters.fromValue(settings))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .block();
+    }
+
+    public void forceMerge(String index, int maxNumSegments) {
+        webClient.post()
+                .uri(String.format("%s/%s/_forcemerge?max_num_segments=%d", elasticSearchEndpoint, index, maxNumSegments))
+                .attribute(HttpResilience.RESPONSE_TIMEOUT, LONG_RUNNING_REQUEST_TIMEOUT)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .block();
+    }
+
+    /**
+     * Waits until the given index has reached the given health status
+     *
+     * @return false if the status has not been reached within the timeout (e.g. "30s")
+     */
+    public boolean waitForStatus(String index, String status, String timeout) {
+        try {
+            final Map<?, ?> result = webClient.get()
+                    .uri(String.format("%s/_cluster/health/%s?wait_for_status=%s&timeout=%s", elasticSearchEndpoint, index, status, timeout))
+                    .attribute(HttpResilience.RESPONSE_TIMEOUT, LONG_RUNNING_REQUEST_TIMEOUT)
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block();
+            return result != null && !Boolean.TRUE.equals(result.get("timed_out"));
+        } catch (WebClientResponseException e) {
+            if (e.getStatusCode() == HttpStatus.REQUEST_TIMEOUT) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    public void updateIndex(String index, String operations) {
+        Map<?, ?> result = bulk(index, BodyInserters.fromValue(operations));
         if (result != null && ((boolean) result.get("errors"))) {
             ((List<Map<String, Object>>) result.get("items")).forEach(item -> {
-                Map<String, Object> instance = (Map) item.get(INDEX);
-                if ((int) instance.get("status") >= 400) {
-                    logger.error(instance.toString());
-                }
+                //The item is keyed by its operation ("index", "delete", ...)
+                item.values().forEach(i -> {
+                    Map<String, Object> instance = (Map) i;
+                    if ((int) instance.get("status") >= 400) {
+                        logger.error(instance.toString());
+                    }
+                });
             });
         }
     }
 
-    public void updateIndex(String index, List<StringBuilder> operationsList) {
-        logger.info(String.format("Updating index %s with %s bulk operations", index, operationsList.size()));
-        operationsList.forEach(operations -> this.updateIndex(index, operations.toString()));
-        logger.info(String.format("Done updating index %s", index));
+    /**
+     * Sends the given NDJSON payload to the _bulk API and returns the raw response (including the results by item).
+     * The request is not retried - rejections are handled by the caller (e.g. by sending smaller bulks).
+     */
+    public Map<?, ?> bulk(String index, BodyInserter<?, ? super ClientHttpRequest> operations) {
+        return webClient.post()
+                .uri(String.format("%s/%s/_bulk", elasticSearchEndpoint, index))
+                .attribute(HttpResilience.RETRIES_DISABLED, true)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                .body(operations)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
     }
 
     public Result getMetrics(String index, int size) {
         return webClient.post()
                 .uri(String.format("%s/%s/_search", elasticSearchEndpoint, index))
+                .attribute(HttpResilience.IDEMPOTENT, true)
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .body(BodyInserters.fromValue(metricsQuery(size)))
                 .retrieve()
@@ -23,25 +23,40 @@
 
 package eu.ebrains.kg.common.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.ebrains.kg.common.configuration.GracefulDeserializationProblemHandler;
 import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.source.ResultsOfKG;
+import eu.ebrains.kg.common.services.resilience.CircuitBreakerOpenException;
+import eu.ebrains.kg.common.services.resilience.HttpResilience;
+import eu.ebrains.kg.common.utils.DataBufferInputStream;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
+import eu.ebrains.kg.common.utils.ResultsOfKGReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.time.Duration;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -94,16 +109,37 @@ public class KGServiceClient {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private static final int MAX_RETRIES = 5;
     private final String kgCoreEndpoint;
     private final WebClient serviceAccountWebClient;
     private final WebClient userWebClient;
 
 
-    public KGServiceClient(@Qualifier("asServiceAccount") WebClient serviceAccountWebClient, @Qualifier("asUser") WebClient userWebClient, @Value("${kgcore.endpoint}") String kgCoreEndpoint) {
+    /**
+     * Limits the number of concurrent indexing requests (across all queries) to protect KG core. The permits are
+     * taken per attempt by the {@link HttpResilience} filter, so a request waiting for its retry doesn't hold one.
+     */
+    private final Semaphore indexingRequests;
+
+
+    /**
+     * The number of response body buffers which are read ahead of the streaming deserialization.
+     */
+    private static final int STREAMING_PREFETCH = 32;
+    /**
+     * The indexing has a circuit of its own so a failing indexing run doesn't shut out the user requests to the KG.
+     */
+    private static final String INDEXING_CIRCUIT = "indexing";
+
+    private final ObjectMapper objectMapper;
+
+
+    public KGServiceClient(@Qualifier("asServiceAccount") WebClient serviceAccountWebClient, @Qualifier("asUser") WebClient userWebClient, @Value("${kgcore.endpoint}") String kgCoreEndpoint, @Value("${KG_MAX_CONCURRENT_INDEXING_REQUESTS:8}") int maxConcurrentIndexingRequests, ObjectMapper objectMapper, HttpResilience httpResilience, @Value("${KG_RESPONSE_TIMEOUT_IN_SECONDS:300}") long responseTimeoutInSeconds, @Value("${http.client.interactive:false}") boolean interactive) {
         this.kgCoreEndpoint = kgCoreEndpoint;
-        this.serviceAccountWebClient = serviceAccountWebClient;
-        this.userWebClient = userWebClient;
+        this.objectMapper = objectMapper;
+        final ExchangeFilterFunction resilience = interactive ? httpResilience.interactiveFilter("kg") : httpResilience.filter("kg", Duration.ofSeconds(responseTimeoutInSeconds));
+        this.serviceAccountWebClient = serviceAccountWebClient.mutate().filter(resilience).build();
+        this.userWebClient = userWebClient.mutate().filter(resilience).build();
+        this.indexingRequests = new Semaphore(Math.max(1, maxConcurrentIndexingRequests), true);
     }
 
     @Cacheable(value = "authEndpoint", unless = "#result == null")
@@ -248,6 +284,7 @@ public class KGServiceClient {
 
             final Map<?, ?> result = userWebClient.post()
                     .uri(url)
+                    .attribute(HttpResilience.IDEMPOTENT, true)
                     .headers(h -> h.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE))
                     .body(BodyInserters.fromValue(payload))
                     .retrieve()
@@ -274,9 +311,30 @@ public class KGServiceClient {
     }
 
 
-    public <T> T executeQueryForIndexing(Class<T> clazz, DataStage dataStage, String queryId, int from, int size) {
-        String url = String.format("%s/queries/%s/instances?stage=%s&from=%d&size=%d", kgCoreEndpoint, queryId, dataStage, from, size);
-        return executeCallForIndexing(clazz, url);
+    /**
+     * Executes the query in streaming mode: Every instance is handed over to the consumer as soon as it has been
+     * deserialized, so the page is never held in memory as a whole. The returned result contains the metadata of the
+     * page (total, from, size) and the parsing errors but no data. The query parameters are passed on to KG core and
+     * bound to the filters of the stored query declaring them as "parameter" (unknown parameters are ignored).
+     */
+    public <T> ResultsOfKG<T> executeQueryForIndexing(Class<T> instanceClazz, DataStage dataStage, String queryId, int from, int size, Map<String, String> queryParameters, Consumer<T> instanceConsumer) {
+        final String url = getQueryUrlForIndexing(dataStage, queryId, from, size, queryParameters);
+        return executeForIndexing(() -> executeStreamingRequestForIndexing(instanceClazz, url, instanceConsumer, true));
+    }
+
+    /**
+     * Same as {@link #executeQueryForIndexing(Class, DataStage, String, int, int, Map, Consumer)} but the request is
+     * executed only once: A failing request (error status or timeout) is thrown as {@link WebClientException}, so
+     * the caller can react to it (e.g. by querying smaller pages) instead of waiting for the retries.
+     */
+    public <T> ResultsOfKG<T> executeQueryForIndexingWithoutRetries(Class<T> instanceClazz, DataStage dataStage, String queryId, int from, int size, Map<String, String> queryParameters, Consumer<T> instanceConsumer) {
+        return executeStreamingRequestForIndexing(instanceClazz, getQueryUrlForIndexing(dataStage, queryId, from, size, queryParameters), instanceConsumer, false);
+    }
+
+    private String getQueryUrlForIndexing(DataStage dataStage, String queryId, int from, int size, Map<String, String> queryParameters) {
+        StringBuilder url = new StringBuilder(String.format("%s/queries/%s/instances?stage=%s&from=%d&size=%d", kgCoreEndpoint, queryId, dataStage, from, size));
+        queryParameters.forEach((k, v) -> url.append('&').append(URLEncoder.encode(k, UTF_8)).append('=').append(URLEncoder.encode(v, UTF_8)));
+        return url.toString();
     }
 
 
@@ -341,35 +399,51 @@ public class KGServiceClient {
                 .block();
     }
 
-    private <T> T executeCallForIndexing(Class<T> clazz, String url) {
-        return doExecuteCallForIndexing(clazz, url, 0);
+    private <T> ResultsOfKG<T> executeStreamingRequestForIndexing(Class<T> instanceClazz, String url, Consumer<T> instanceConsumer, boolean retry) {
+        final Flux<DataBuffer> body = serviceAccountWebClient.get()
+                .uri(url)
+                .headers(h -> h.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE))
+                .attributes(a -> {
+                    a.put(HttpResilience.CONCURRENCY_LIMIT, indexingRequests);
+                    a.put(HttpResilience.CIRCUIT, INDEXING_CIRCUIT);
+                    if (!retry) {
+                        a.put(HttpResilience.RETRIES_DISABLED, true);
+                    }
+                })
+                .retrieve()
+                .bodyToFlux(DataBuffer.class);
+        try (DataBufferInputStream inputStream = DataBufferInputStream.subscribe(body, STREAMING_PREFETCH)) {
+            try {
+                final ResultsOfKG<T> result = ResultsOfKGReader.read(objectMapper, inputStream, instanceClazz, instanceConsumer);
+                result.setResponseSizeInBytes(inputStream.getBytesRead());
+                result.setResponseWaitingTimeInMs(inputStream.getWaitingTimeInMs());
+                return result;
+            } catch (IOException | RuntimeException e) {
+                //Jackson might have wrapped the error of the response (e.g. a failed status) - we want to see the original one
+                if (inputStream.getFailure() instanceof RuntimeException failure) {
+                    throw failure;
+                }
+                if (e instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(e);
+            }
+        }
     }
 
-    private <T> T doExecuteCallForIndexing(Class<T> clazz, String url, int currentTry) {
+    /**
+     * Temporary failures have already been retried by the {@link HttpResilience} filter (with growing delays which
+     * don't block the thread) - a request which still fails with an error status or a timeout is skipped. Since the
+     * exchange is retried before the body is read, this is also safe for streamed requests (no instance has been
+     * handed over yet). If the circuit to KG core is open, the {@link CircuitBreakerOpenException} is passed on so the
+     * indexing stops instead of skipping all remaining pages.
+     */
+    private <T> T executeForIndexing(Supplier<T> request) {
         try {
-            return serviceAccountWebClient.get()
-                    .uri(url)
-                    .headers(h -> h.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE))
-                    .retrieve()
-                    .bodyToMono(clazz).doOnSuccess(GracefulDeserializationProblemHandler::parsingErrorHandler)
-                    .doFinally(t -> GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.remove())
-                    .block();
-        } catch (WebClientResponseException e) {
-            logger.warn("Was not able to execute call for indexing", e);
-            if (currentTry < MAX_RETRIES) {
-                final long waitingTime = currentTry * currentTry * 10000L;
-                logger.warn("Retrying to execute call for indexing for max {} more times - next time in {} seconds", MAX_RETRIES - currentTry, waitingTime / 1000);
-                try {
-                    Thread.sleep(waitingTime);
-                    return doExecuteCallForIndexing(clazz, url, currentTry + 1);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return null;
-                }
-            } else {
-                logger.error("Was not able to execute the call for indexing. Going to skip it.", e);
-                return null;
-            }
+            return request.get();
+        } catch (WebClientException e) {
+            logger.error("Was not able to execute the call for indexing. Going to skip it.", e);
+            return null;
         }
     }
 }
@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.services.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides the filter which makes the calls of a {@link WebClient} to an endpoint resilient:
+ * <ul>
+ *     <li>Every request has a response timeout (the maximal time between two reads of the response) so a hung
+ *     connection doesn't block the caller forever</li>
+ *     <li>Temporary failures are retried with exponentially growing, jittered delays. The delays are scheduled
+ *     without blocking a thread. Only rejections which guarantee that the request hasn't been processed (429, 503)
+ *     and failing connections are retried for every request - other failures (e.g. a 502 or 504 of a proxy which
+ *     doesn't tell whether the request has been applied) only for idempotent ones. POST requests which don't change
+ *     anything (e.g. searches) can declare themselves idempotent with the attribute {@link #IDEMPOTENT}.</li>
+ *     <li>There is a circuit breaker per endpoint and host: Once it's open, requests fail right away with a
+ *     {@link CircuitBreakerOpenException} instead of piling up. A request counts once - as a failure only if it
+ *     has still failed after its retries. Traffic which shouldn't affect the other requests to the same endpoint
+ *     (e.g. indexing) uses a circuit of its own by naming it with the attribute {@link #CIRCUIT}.</li>
+ * </ul>
+ * Requests can disable the retries or override the timeout with the attributes {@link #RETRIES_DISABLED} and
+ * {@link #RESPONSE_TIMEOUT}. With the attribute {@link #CONCURRENCY_LIMIT}, every attempt takes a permit of the
+ * given {@link Semaphore} and holds it until its response body has been consumed - a request waiting for its
+ * retry doesn't occupy a permit. Only the exchange is retried - a failure while the body is read is not.
+ * <p>
+ * The retries of the {@link #filter(String, Duration) default filter} wait for up to minutes, which suits background
+ * work such as indexing. Requests a user is waiting for use the {@link #interactiveFilter(String) interactive filter}
+ * instead: it has a short response timeout and retries at most once after a short delay.
+ */
+@Component
+public class HttpResilience {
+
+    public static final String RETRIES_DISABLED = HttpResilience.class.getName() + ".retriesDisabled";
+    public static final String RESPONSE_TIMEOUT = HttpResilience.class.getName() + ".responseTimeout";
+    public static final String IDEMPOTENT = HttpResilience.class.getName() + ".idempotent";
+    public static final String CONCURRENCY_LIMIT = HttpResilience.class.getName() + ".concurrencyLimit";
+    public static final String CIRCUIT = HttpResilience.class.getName() + ".circuit";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.OPTIONS);
+    private static final Set<Integer> UNAVAILABLE_STATUS_CODES = Set.of(429, 502, 503, 504);
+    /**
+     * The status codes which are sent without processing the request
+     */
+    private static final Set<Integer> REJECTED_STATUS_CODES = Set.of(429, 503);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final MeterRegistry meterRegistry;
+    private final int maxRetries;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final int circuitFailureThreshold;
+    private final Duration circuitOpenDuration;
+    private final int interactiveMaxRetries;
+    private final Duration interactiveBackoff;
+    private final Duration interactiveResponseTimeout;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    public HttpResilience(MeterRegistry meterRegistry, @Value("${HTTP_CLIENT_MAX_RETRIES:5}") int maxRetries, @Value("${HTTP_CLIENT_MIN_BACKOFF_IN_MS:2000}") long minBackoffInMs, @Value("${HTTP_CLIENT_MAX_BACKOFF_IN_SECONDS:120}") long maxBackoffInSeconds, @Value("${HTTP_CLIENT_CIRCUIT_FAILURE_THRESHOLD:10}") int circuitFailureThreshold, @Value("${HTTP_CLIENT_CIRCUIT_OPEN_IN_SECONDS:30}") long circuitOpenInSeconds, @Value("${HTTP_CLIENT_INTERACTIVE_MAX_RETRIES:1}") int interactiveMaxRetries, @Value("${HTTP_CLIENT_INTERACTIVE_BACKOFF_IN_MS:200}") long interactiveBackoffInMs, @Value("${HTTP_CLIENT_INTERACTIVE_RESPONSE_TIMEOUT_IN_SECONDS:15}") long interactiveResponseTimeoutInSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.maxRetries = maxRetries;
+        this.minBackoff = Duration.ofMillis(minBackoffInMs);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffInSeconds);
+        this.circuitFailureThreshold = circuitFailureThreshold;
+        this.circuitOpenDuration = Duration.ofSeconds(circuitOpenInSeconds);
+        this.interactiveMaxRetries = Math.min(interactiveMaxRetries, 1);
+        this.interactiveBackoff = Duration.ofMillis(interactiveBackoffInMs);
+        this.interactiveResponseTimeout = Duration.ofSeconds(interactiveResponseTimeoutInSeconds);
+    }
+
+    public ExchangeFilterFunction filter(String endpoint, Duration responseTimeout) {
+        return filter(endpoint, responseTimeout, maxRetries);
+    }
+
+    public ExchangeFilterFunction filter(String endpoint, Duration responseTimeout, int maxRetries) {
+        return filter(endpoint, responseTimeout, maxRetries, minBackoff, maxBackoff);
+    }
+
+    /**
+     * The filter for requests a user is waiting for
+     */
+    public ExchangeFilterFunction interactiveFilter(String endpoint) {
+        return filter(endpoint, interactiveResponseTimeout, interactiveMaxRetries, interactiveBackoff, interactiveBackoff);
+    }
+
+    private ExchangeFilterFunction filter(String endpoint, Duration responseTimeout, int maxRetries, Duration minBackoff, Duration maxBackoff) {
+        final Counter retries = meterRegistry.counter("kg.http.client.retries", "endpoint", endpoint);
+        return (request, next) -> {
+            final Duration timeout = request.attribute(RESPONSE_TIMEOUT).map(Duration.class::cast).orElse(responseTimeout);
+            final ClientRequest timedRequest = ClientRequest.from(request).httpRequest(httpRequest -> {
+                if (httpRequest.getNativeRequest() instanceof HttpClientRequest nativeRequest) {
+                    nativeRequest.responseTimeout(timeout);
+                }
+            }).build();
+            final CircuitBreaker circuitBreaker = getCircuitBreaker(endpoint, request);
+            final Mono<ClientResponse> attempt = Mono.defer(() -> exchange(timedRequest, next));
+            final Mono<ClientResponse> exchange = maxRetries <= 0 || request.attribute(RETRIES_DISABLED).isPresent() ? attempt :
+                    attempt.retryWhen(Retry.backoff(maxRetries, minBackoff).maxBackoff(maxBackoff).jitter(0.5)
+                            .filter(e -> isRetryable(request, e))
+                            .doBeforeRetry(signal -> {
+                                retries.increment();
+                                logger.warn("Retrying {} {} ({} of max {} retries) - {}", request.method(), request.url(), signal.totalRetries() + 1, maxRetries, signal.failure().getMessage());
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+            return Mono.defer(() -> {
+                if (!circuitBreaker.tryAcquire()) {
+                    return Mono.error(new CircuitBreakerOpenException(circuitBreaker.getName()));
+                }
+                return exchange
+                        .doOnNext(response -> circuitBreaker.onSuccess())
+                        .doOnError(e -> {
+                            if (!isEndpointFailure(e)) {
+                                //The endpoint is alive - it just refuses the request for now
+                                circuitBreaker.onSuccess();
+                            } else if (circuitBreaker.onFailure()) {
+                                logger.error("Opening the circuit for {} for {} seconds", circuitBreaker.getName(), circuitOpenDuration.toSeconds());
+                                meterRegistry.counter("kg.http.client.circuit.opened", "circuit", circuitBreaker.getName()).increment();
+                            }
+                        })
+                        .doOnCancel(circuitBreaker::onCancel);
+            });
+        };
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next) {
+        final Semaphore permits = request.attribute(CONCURRENCY_LIMIT).map(Semaphore.class::cast).orElse(null);
+        if (permits == null) {
+            return exchangeChecked(request, next);
+        }
+        final AtomicBoolean released = new AtomicBoolean();
+        final Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        //The permit is awaited on a thread which may block - a permit acquired after a cancellation is discarded (released)
+        return Mono.fromCallable(() -> {
+                    permits.acquire();
+                    return release;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnDiscard(Runnable.class, Runnable::run)
+                .flatMap(permit -> exchangeChecked(request, next)
+                        .map(response -> response.mutate().body(body -> body.doFinally(signal -> release.run())).build())
+                        .doOnError(e -> release.run())
+                        .doOnCancel(release));
+    }
+
+    /**
+     * Exchanges the request and turns the responses of an unavailable or failing endpoint into errors
+     */
+    private Mono<ClientResponse> exchangeChecked(ClientRequest request, ExchangeFunction next) {
+        return next.exchange(request)
+                .flatMap(response -> UNAVAILABLE_STATUS_CODES.contains(response.statusCode().value()) || response.statusCode().is5xxServerError() ? response.createException().flatMap(Mono::error) : Mono.just(response));
+    }
+
+    private CircuitBreaker getCircuitBreaker(String endpoint, ClientRequest request) {
+        final String host = request.url().getHost();
+        final String key = request.attribute(CIRCUIT).map(circuit -> String.format("%s (%s, %s)", endpoint, host, circuit)).orElseGet(() -> String.format("%s (%s)", endpoint, host));
+        return circuitBreakers.computeIfAbsent(key, name -> {
+            final CircuitBreaker circuitBreaker = new CircuitBreaker(name, circuitFailureThreshold, circuitOpenDuration);
+            meterRegistry.gauge("kg.http.client.circuit.open", Tags.of("circuit", name), circuitBreaker, c -> c.isOpen() ? 1 : 0);
+            return circuitBreaker;
+        });
+    }
+
+    /**
+     * Server errors and failing connections (including timeouts) count as failures of the endpoint - a rejection
+     * because of too many requests doesn't.
+     */
+    private static boolean isEndpointFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    private static boolean isRetryable(ClientRequest request, Throwable e) {
+        final boolean idempotent = IDEMPOTENT_METHODS.contains(request.method()) || request.attribute(IDEMPOTENT).isPresent();
+        if (e instanceof WebClientResponseException responseException) {
+            final HttpStatusCode status = responseException.getStatusCode();
+            return REJECTED_STATUS_CODES.contains(status.value()) || (status.is5xxServerError() && idempotent);
+        }
+        if (e instanceof WebClientRequestException) {
+            //If the connection couldn't be established, the request hasn't reached the endpoint
+            return e.getCause() instanceof ConnectException || idempotent;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Exposes a reactive response body as a blocking {@link InputStream}. Only {@code prefetch} buffers are requested
+ * ahead of the reader, so the body is never held in memory as a whole - the connection is simply not read any further
+ * until the consumer catches up.
+ */
+public class DataBufferInputStream extends InputStream implements Subscriber<DataBuffer> {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final int prefetch;
+    private volatile Subscription subscription;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private DataBuffer current;
+    private boolean completed;
+    private long bytesRead;
+    private long waitingTimeInNanos;
+
+    private DataBufferInputStream(int prefetch) {
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    public static DataBufferInputStream subscribe(Publisher<DataBuffer> body, int prefetch) {
+        final DataBufferInputStream inputStream = new DataBufferInputStream(prefetch);
+        body.subscribe(inputStream);
+        return inputStream;
+    }
+
+    /**
+     * @return the error signaled by the response body (e.g. a {@link org.springframework.web.reactive.function.client.WebClientResponseException}) if any
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the number of bytes of the body consumed by the reader so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the time the reader has been waiting for the body so far (including the time to the first byte) - the
+     * time spent processing what has been read is not part of it
+     */
+    public long getWaitingTimeInMs() {
+        return waitingTimeInNanos / 1_000_000;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(DataBuffer dataBuffer) {
+        if (closed) {
+            DataBufferUtils.release(dataBuffer);
+        } else {
+            queue.add(dataBuffer);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.failure = throwable;
+        queue.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        queue.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final DataBuffer buffer = nextReadableBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        bytesRead++;
+        return buffer.read() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        final DataBuffer buffer = nextReadableBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        final int readableBytes = Math.min(length, buffer.readableByteCount());
+        buffer.read(bytes, offset, readableBytes);
+        bytesRead += readableBytes;
+        return readableBytes;
+    }
+
+    private DataBuffer nextReadableBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        while (current == null || current.readableByteCount() == 0) {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+                subscription.request(1);
+            }
+            if (completed) {
+                return null;
+            }
+            final Object next;
+            final long waitingSince = System.nanoTime();
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the response body");
+            } finally {
+                waitingTimeInNanos += System.nanoTime() - waitingSince;
+            }
+            if (next == END) {
+                completed = true;
+                if (failure instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                } else if (failure != null) {
+                    throw new IOException(failure);
+                }
+                return null;
+            }
+            current = (DataBuffer) next;
+        }
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (subscription != null && !completed) {
+                subscription.cancel();
+            }
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+            queue.forEach(o -> {
+                if (o instanceof DataBuffer dataBuffer) {
+                    DataBufferUtils.release(dataBuffer);
+                }
+            });
+            queue.clear();
+        }
+    }
+}
@@ -56,6 +56,10 @@ public class ESHelper {
     }
 
 
+    /**
+     * The searchable and the auto released indexes are aliases pointing to a versioned physical index (see {@link #getVersionedIndex(String)}).
+     * The temporary alias points to the physical index which is populated during a full replacement.
+     */
     public String getSearchableIndex(DataStage dataStage, Class<?> type, boolean temporary) {
         return String.format("%s%s_searchable_%s", temporary ? "temporary_" : "", getIndexPrefix(dataStage), MetaModelUtils.getIndexNameForClass(type));
     }
@@ -76,6 +80,14 @@ public class ESHelper {
         return String.format("%s%s_%s", temporary ? "temporary_" : "", getIndexPrefix(dataStage), MetaModelUtils.getIndexNameForClass(type));
     }
 
+    /**
+     * @return a new physical index name for the given alias. The "v" prefix ensures the physical indexes are not matched by the wildcards of
+     * {@link #getIndexesForDocument(DataStage)} and {@link #getIndexesForSearch(DataStage)} - they are only reachable through their alias.
+     */
+    public String getVersionedIndex(String alias) {
+        return String.format("v%d_%s", System.currentTimeMillis(), alias);
+    }
+
     public String getResourcesIndex(){
         return getProfilePrefix()+"resources";
     }
@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A set of ids which keeps the ids in canonical UUID representation in a {@link UUIDSet} (two longs instead of a string
+ * of 36 characters) - only the few ids which are not UUIDs are kept as strings.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class IdSet {
+
+    private final UUIDSet uuids;
+    private final Set<String> others = new HashSet<>();
+
+    public IdSet() {
+        this.uuids = new UUIDSet();
+    }
+
+    public IdSet(int expectedSize, boolean offHeap) {
+        this.uuids = new UUIDSet(expectedSize, offHeap);
+    }
+
+    public boolean add(String id) {
+        if (id == null) {
+            return false;
+        }
+        if (isCanonicalUUID(id)) {
+            return uuids.add(mostSignificantBits(id), leastSignificantBits(id));
+        }
+        return others.add(id);
+    }
+
+    public void addAll(Collection<String> ids) {
+        ids.forEach(this::add);
+    }
+
+    public boolean contains(String id) {
+        if (id == null) {
+            return false;
+        }
+        if (isCanonicalUUID(id)) {
+            return uuids.contains(mostSignificantBits(id), leastSignificantBits(id));
+        }
+        return others.contains(id);
+    }
+
+    public boolean remove(String id) {
+        if (id == null) {
+            return false;
+        }
+        if (isCanonicalUUID(id)) {
+            return uuids.remove(mostSignificantBits(id), leastSignificantBits(id));
+        }
+        return others.remove(id);
+    }
+
+    public void removeAll(Collection<String> ids) {
+        ids.forEach(this::remove);
+    }
+
+    public void addUUID(long mostSignificantBits, long leastSignificantBits) {
+        uuids.add(mostSignificantBits, leastSignificantBits);
+    }
+
+    public void forEachUUID(UUIDSet.UUIDConsumer consumer) {
+        uuids.forEach(consumer);
+    }
+
+    public void forEachOther(Consumer<String> consumer) {
+        others.forEach(consumer);
+    }
+
+    public void forEach(Consumer<String> consumer) {
+        uuids.forEach((most, least) -> consumer.accept(new UUID(most, least).toString()));
+        others.forEach(consumer);
+    }
+
+    public List<String> toList() {
+        final List<String> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    public int size() {
+        return uuids.size() + others.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long getAllocatedBytesOfUUIDs() {
+        return uuids.getAllocatedBytes();
+    }
+
+    /**
+     * Only the canonical representation (lower case, as produced by {@link UUID#toString()}) is kept as UUID - everything
+     * else is kept as is to not change the semantics of the comparison.
+     */
+    private static boolean isCanonicalUUID(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            final char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mostSignificantBits(String uuid) {
+        return parseHex(uuid, 0, 8) << 32 | parseHex(uuid, 9, 13) << 16 | parseHex(uuid, 14, 18);
+    }
+
+    private static long leastSignificantBits(String uuid) {
+        return parseHex(uuid, 19, 23) << 48 | parseHex(uuid, 24, 36);
+    }
+
+    private static long parseHex(String id, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value << 4 | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+}
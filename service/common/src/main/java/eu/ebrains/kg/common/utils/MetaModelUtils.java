@@ -28,7 +28,6 @@ import eu.ebrains.kg.common.controller.translation.TranslatorRegistry;
 import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.model.target.FieldInfo;
 import eu.ebrains.kg.common.model.target.MetaInfo;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
@@ -44,9 +43,13 @@ public class MetaModelUtils {
     private static Object defaultFieldAnnotations;
 
     private final TranslatorRegistry translatorRegistry;
+    private final Map<String, TranslatorModel<?, ?>> translatorModelsByName;
 
     public MetaModelUtils(TranslatorRegistry translatorRegistry) {
         this.translatorRegistry = translatorRegistry;
+        Map<String, TranslatorModel<?, ?>> translatorModelsByName = new LinkedHashMap<>();
+        translatorRegistry.getTranslators().forEach(m -> translatorModelsByName.putIfAbsent(MetaModelUtils.getNameForClass(m.getTargetClass()), m));
+        this.translatorModelsByName = Collections.unmodifiableMap(translatorModelsByName);
     }
 
     public Class<?> getFileClass(){
@@ -85,12 +88,15 @@ public class MetaModelUtils {
         }
     }
 
+    /**
+     * @return the translator model of the given type (the name of its target class) or null if there is none
+     */
+    public TranslatorModel<?, ?> getTranslatorModel(String type) {
+        return type == null ? null : translatorModelsByName.get(type);
+    }
+
     public Type getTypeTargetClass(String type) {
-        List<TranslatorModel<?, ?>> match = translatorRegistry.getTranslators().stream().filter(m -> MetaModelUtils.getNameForClass(m.getTargetClass()).equals(type)).collect(Collectors.toList());
-        if (match.isEmpty()) {
-            return null;
-        }
-        return match.get(0).getTargetClass();
+        return getClassForType(type);
     }
 
     public void visitTypeFields(String type, Consumer<Field> consumer) {
@@ -198,32 +204,20 @@ public class MetaModelUtils {
     }
 
     public Class<?> getClassForType(String type){
-        if (StringUtils.isNotBlank(type)) {
-            for (TranslatorModel<?, ?> model : translatorRegistry.getTranslators()) {
-                Class<?> targetModel = model.getTargetClass();
-                if (MetaModelUtils.getNameForClass(targetModel).equals(type)) {
-                    return targetModel;
-                }
-            }
-        }
-        return null;
+        TranslatorModel<?, ?> model = getTranslatorModel(type);
+        return model != null ? model.getTargetClass() : null;
     }
 
     public List<String> getSemanticTypes(String type) {
-        if (!StringUtils.isBlank(type)) {
-            for (TranslatorModel<?, ?> model : translatorRegistry.getTranslators()) {
-                Class<?> targetModel = model.getTargetClass();
-                String name = MetaModelUtils.getNameForClass(targetModel);
-                if (name.equals(type)) {
-                    List<String> semanticTypes = model.getTranslator().semanticTypes();
-                    if (CollectionUtils.isEmpty(semanticTypes)) {
-                        return Collections.emptyList();
-                    }
-                    return semanticTypes;
-                }
-            }
+        TranslatorModel<?, ?> model = getTranslatorModel(type);
+        if (model == null) {
+            return Collections.emptyList();
+        }
+        List<String> semanticTypes = model.getTranslator().semanticTypes();
+        if (CollectionUtils.isEmpty(semanticTypes)) {
+            return Collections.emptyList();
         }
-        return Collections.emptyList();
+        return semanticTypes;
     }
 
 }
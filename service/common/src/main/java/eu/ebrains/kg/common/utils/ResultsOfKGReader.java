@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.common.configuration.GracefulDeserializationProblemHandler;
+import eu.ebrains.kg.common.model.ErrorReport;
+import eu.ebrains.kg.common.model.source.ResultsOfKG;
+import eu.ebrains.kg.common.model.source.SourceInstance;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads a {@link ResultsOfKG} response with a token stream: The instances of the "data" array are deserialized one by
+ * one and handed over to the consumer right away instead of being collected in a list. The returned result therefore
+ * only contains the metadata of the response (total, from, size, ...) and the parsing errors by instance.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResultsOfKGReader {
+
+    public static <T> ResultsOfKG<T> read(ObjectMapper objectMapper, InputStream inputStream, Class<T> instanceType, Consumer<T> instanceConsumer) throws IOException {
+        final ResultsOfKG<T> result = new ResultsOfKG<>();
+        GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.remove();
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected response - expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.currentName();
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (fieldName) {
+                    case "data" -> readData(objectMapper, parser, instanceType, instanceConsumer, result);
+                    case "message" -> result.setMessage(parser.getValueAsString());
+                    case "error" -> result.setError(objectMapper.readValue(parser, ResultsOfKG.Error.class));
+                    case "startTime" -> result.setStartTime(parser.getValueAsLong());
+                    case "durationInMs" -> result.setDurationInMs(parser.getValueAsLong());
+                    case "total" -> result.setTotal(parser.getValueAsInt());
+                    case "size" -> result.setSize(parser.getValueAsInt());
+                    case "from" -> result.setFrom(parser.getValueAsInt());
+                    default -> parser.skipChildren();
+                }
+            }
+        } finally {
+            GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.remove();
+        }
+        return result;
+    }
+
+    private static <T> void readData(ObjectMapper objectMapper, JsonParser parser, Class<T> instanceType, Consumer<T> instanceConsumer, ResultsOfKG<T> result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                final T instance = objectMapper.readValue(parser, instanceType);
+                //The problem handler keeps track of the errors by the index of the instance in the data array
+                reportParsingErrors(instance, index, result);
+                if (instance != null) {
+                    instanceConsumer.accept(instance);
+                }
+            }
+            index++;
+        }
+    }
+
+    private static <T> void reportParsingErrors(T instance, int index, ResultsOfKG<T> result) {
+        final Map<Integer, List<String>> errorMap = GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.get();
+        if (errorMap != null) {
+            final List<String> errors = errorMap.remove(index);
+            if (errors != null && instance instanceof SourceInstance sourceInstance) {
+                final String identifier = IdUtils.getUUID(sourceInstance.getId());
+                if (identifier != null) {
+                    if (result.getErrors() == null) {
+                        result.setErrors(new ErrorReport());
+                    }
+                    result.getErrors().put(identifier, errors);
+                }
+            }
+        }
+    }
+}
@@ -26,7 +26,7 @@ package eu.ebrains.kg.common.utils;
 import eu.ebrains.kg.common.model.elasticsearch.Document;
 import eu.ebrains.kg.common.model.target.HasBadges;
 import eu.ebrains.kg.common.model.target.HasTrendingInformation;
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
@@ -50,7 +50,7 @@ public class TranslatorUtils {
     public static final String IS_NEW_BADGE = "isNew";
     public static final String IS_TRENDING_BADGE = "isTrending";
 
-    private final DOICitationFormatter doiCitationFormatter;
+    private final DOICitationResolver doiCitationResolver;
     private final ESServiceClient esServiceClient;
     private final Integer trendingThreshold;
     private final ESHelper esHelper;
@@ -59,14 +59,20 @@ public class TranslatorUtils {
 
     private final List<String> errors;
 
+    /**
+     * The resources fetched ahead of the translation (by id) - ids of missing resources are mapped to null
+     */
+    private final Map<String, Document> prefetchedResources;
 
-    public TranslatorUtils(DOICitationFormatter doiCitationFormatter, ESServiceClient esServiceClient, Integer trendingThreshold, Map<String, Object> translationContext, List<String> errors, ESHelper esHelper) {
-        this.doiCitationFormatter = doiCitationFormatter;
+
+    public TranslatorUtils(DOICitationResolver doiCitationResolver, ESServiceClient esServiceClient, Integer trendingThreshold, Map<String, Object> translationContext, List<String> errors, ESHelper esHelper, Map<String, Document> prefetchedResources) {
+        this.doiCitationResolver = doiCitationResolver;
         this.esServiceClient = esServiceClient;
         this.trendingThreshold = trendingThreshold;
         this.translationContext = translationContext;
         this.esHelper = esHelper;
         this.errors = errors != null ? errors : new ArrayList<>();
+        this.prefetchedResources = prefetchedResources;
     }
 
 
@@ -114,6 +120,9 @@ public class TranslatorUtils {
     }
 
     public Document getResource(String  id){
+        if (prefetchedResources != null && prefetchedResources.containsKey(id)) {
+            return prefetchedResources.get(id);
+        }
         try {
             return this.esServiceClient.getDocumentByNativeId(esHelper.getResourcesIndex(), id);
         }
@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.UUID;
+
+/**
+ * A hash set of UUIDs with open addressing (linear probing): the two longs of every UUID are stored next to each other
+ * in a single buffer - there is neither an object per entry nor boxing. The buffer can optionally be allocated
+ * off-heap (e.g. for very large sets which shouldn't put pressure on the garbage collector).
+ * <p>
+ * This class is not thread-safe.
+ */
+public class UUIDSet {
+
+    @FunctionalInterface
+    public interface UUIDConsumer {
+        void accept(long mostSignificantBits, long leastSignificantBits);
+    }
+
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+    private static final double LOAD_FACTOR = 0.6;
+    //Two longs (16 bytes) per slot - a direct buffer is limited to Integer.MAX_VALUE bytes, so 2^26 slots (1 GiB) at most
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final boolean offHeap;
+    /**
+     * Two longs per slot - the nil UUID (0, 0) marks an empty slot which is why it is tracked separately.
+     */
+    private LongBuffer slots;
+    private int capacity;
+    private int size;
+    private boolean containsNil;
+
+    public UUIDSet() {
+        this(DEFAULT_EXPECTED_SIZE, false);
+    }
+
+    public UUIDSet(int expectedSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.capacity = capacityFor(expectedSize);
+        this.slots = allocate(capacity, offHeap);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        final long minimalCapacity = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        if (minimalCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(String.format("A set of %d UUIDs exceeds the maximal capacity", expectedSize));
+        }
+        return Math.max(2, Integer.highestOneBit((int) minimalCapacity - 1) << 1);
+    }
+
+    private static LongBuffer allocate(int capacity, boolean offHeap) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity * 2 * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer() : LongBuffer.allocate(capacity * 2);
+    }
+
+    private static int slotFor(long mostSignificantBits, long leastSignificantBits, int capacity) {
+        //The finalizer of MurmurHash3 - name based UUIDs (v3) are not as well distributed as random ones (v4)
+        long h = mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & (capacity - 1);
+    }
+
+    public boolean add(UUID uuid) {
+        return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @return true if the UUID hasn't been part of the set yet
+     */
+    public boolean add(long mostSignificantBits, long leastSignificantBits) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            if (containsNil) {
+                return false;
+            }
+            containsNil = true;
+            size++;
+            return true;
+        }
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            grow();
+        }
+        if (insert(slots, capacity, mostSignificantBits, leastSignificantBits)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean insert(LongBuffer slots, int capacity, long mostSignificantBits, long leastSignificantBits) {
+        int slot = slotFor(mostSignificantBits, leastSignificantBits, capacity);
+        while (true) {
+            final long most = slots.get(2 * slot);
+            final long least = slots.get(2 * slot + 1);
+            if (most == 0 && least == 0) {
+                slots.put(2 * slot, mostSignificantBits);
+                slots.put(2 * slot + 1, leastSignificantBits);
+                return true;
+            }
+            if (most == mostSignificantBits && least == leastSignificantBits) {
+                return false;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("The UUID set has reached its maximal capacity");
+        }
+        final int newCapacity = capacity << 1;
+        final LongBuffer newSlots = allocate(newCapacity, offHeap);
+        forEachSlot((most, least) -> insert(newSlots, newCapacity, most, least));
+        slots = newSlots;
+        capacity = newCapacity;
+    }
+
+    public boolean contains(UUID uuid) {
+        return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(long mostSignificantBits, long leastSignificantBits) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            return containsNil;
+        }
+        int slot = slotFor(mostSignificantBits, leastSignificantBits, capacity);
+        while (true) {
+            final long most = slots.get(2 * slot);
+            final long least = slots.get(2 * slot + 1);
+            if (most == 0 && least == 0) {
+                return false;
+            }
+            if (most == mostSignificantBits && least == leastSignificantBits) {
+                return true;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    public boolean remove(UUID uuid) {
+        return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @return true if the UUID has been part of the set
+     */
+    public boolean remove(long mostSignificantBits, long leastSignificantBits) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            if (!containsNil) {
+                return false;
+            }
+            containsNil = false;
+            size--;
+            return true;
+        }
+        final int mask = capacity - 1;
+        int gap = slotFor(mostSignificantBits, leastSignificantBits, capacity);
+        while (true) {
+            final long most = slots.get(2 * gap);
+            final long least = slots.get(2 * gap + 1);
+            if (most == 0 && least == 0) {
+                return false;
+            }
+            if (most == mostSignificantBits && least == leastSignificantBits) {
+                break;
+            }
+            gap = (gap + 1) & mask;
+        }
+        //Backward shift: the following entries of the cluster are moved into the gap if their slot allows it, so the gap doesn't end the lookup of any of them
+        for (int slot = (gap + 1) & mask; ; slot = (slot + 1) & mask) {
+            final long most = slots.get(2 * slot);
+            final long least = slots.get(2 * slot + 1);
+            if (most == 0 && least == 0) {
+                break;
+            }
+            final int preferredSlot = slotFor(most, least, capacity);
+            if (((slot - preferredSlot) & mask) >= ((slot - gap) & mask)) {
+                slots.put(2 * gap, most);
+                slots.put(2 * gap + 1, least);
+                gap = slot;
+            }
+        }
+        slots.put(2 * gap, 0);
+        slots.put(2 * gap + 1, 0);
+        size--;
+        return true;
+    }
+
+    private void forEachSlot(UUIDConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            final long most = slots.get(2 * slot);
+            final long least = slots.get(2 * slot + 1);
+            if (most != 0 || least != 0) {
+                consumer.accept(most, least);
+            }
+        }
+    }
+
+    public void forEach(UUIDConsumer consumer) {
+        if (containsNil) {
+            consumer.accept(0, 0);
+        }
+        forEachSlot(consumer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of bytes allocated for the slots (the memory footprint of the set apart from a few fields)
+     */
+    public long getAllocatedBytes() {
+        return (long) capacity * 2 * Long.BYTES;
+    }
+}
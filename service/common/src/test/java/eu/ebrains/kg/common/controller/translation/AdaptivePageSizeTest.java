@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptivePageSizeTest {
+
+    private static final long TARGET_LATENCY_IN_MS = 1000;
+    private static final long MAX_RESPONSE_SIZE_IN_BYTES = 1000;
+
+    private final AdaptivePageSize pageSize = new AdaptivePageSize(100, 10, 200, TARGET_LATENCY_IN_MS, MAX_RESPONSE_SIZE_IN_BYTES);
+
+    @Test
+    void initialSizeWithinWindow() {
+        assertEquals(10, new AdaptivePageSize(1, 10, 200, TARGET_LATENCY_IN_MS, MAX_RESPONSE_SIZE_IN_BYTES).get());
+        assertEquals(200, new AdaptivePageSize(1000, 10, 200, TARGET_LATENCY_IN_MS, MAX_RESPONSE_SIZE_IN_BYTES).get());
+    }
+
+    @Test
+    void growOnFastAndSmallFullPages() {
+        pageSize.onSuccess(100, 100, 100, 100L);
+        assertEquals(125, pageSize.get());
+        pageSize.onSuccess(125, 125, 100, null);
+        assertEquals(156, pageSize.get());
+        pageSize.onSuccess(156, 156, 100, 100L);
+        pageSize.onSuccess(195, 195, 100, 100L);
+        assertEquals(200, pageSize.get());
+    }
+
+    @Test
+    void keepSizeOnPartialOrOutdatedPages() {
+        pageSize.onSuccess(100, 42, 100, 100L);
+        assertEquals(100, pageSize.get());
+        pageSize.onSuccess(50, 50, 100, 100L);
+        assertEquals(100, pageSize.get());
+    }
+
+    @Test
+    void keepSizeWithinTargets() {
+        pageSize.onSuccess(100, 100, 700, 100L);
+        assertEquals(100, pageSize.get());
+        pageSize.onSuccess(100, 100, 100, 700L);
+        assertEquals(100, pageSize.get());
+    }
+
+    @Test
+    void shrinkOnSlowOrLargePages() {
+        pageSize.onSuccess(100, 100, 1500, 100L);
+        assertEquals(50, pageSize.get());
+        pageSize.onSuccess(50, 50, 100, 1500L);
+        assertEquals(25, pageSize.get());
+    }
+
+    @Test
+    void shrinkOnFailureDownToMinSize() {
+        assertEquals(50, pageSize.onFailure());
+        assertEquals(25, pageSize.onFailure());
+        assertEquals(12, pageSize.onFailure());
+        assertEquals(10, pageSize.onFailure());
+        assertEquals(10, pageSize.onFailure());
+        assertEquals(pageSize.getMinSize(), pageSize.get());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.controller.translation;
+
+import eu.ebrains.kg.common.controller.translation.models.TargetInstancesResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetInstancesPagerTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+    private final List<Integer> requestedOffsets = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private TargetInstancesResult<Integer> page(int from, int size, int total) {
+        requestedOffsets.add(from);
+        final TargetInstancesResult<Integer> result = new TargetInstancesResult<>();
+        final List<Integer> instances = new ArrayList<>();
+        for (int i = from; i < Math.min(from + size, total); i++) {
+            instances.add(i);
+        }
+        result.setTargetInstances(instances);
+        result.setFrom(from);
+        result.setSize(size);
+        result.setTotal(total);
+        return result;
+    }
+
+    private static IntSupplier sizes(int... sizes) {
+        final AtomicInteger index = new AtomicInteger();
+        return () -> sizes[Math.min(index.getAndIncrement(), sizes.length - 1)];
+    }
+
+    private static List<Integer> collect(TargetInstancesPager<Integer> pager) {
+        final List<Integer> instances = new ArrayList<>();
+        pager.forEachRemaining(p -> instances.addAll(p.getTargetInstances()));
+        return instances;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        final List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            range.add(i);
+        }
+        return range;
+    }
+
+    @Test
+    void sequentialPagesWithChangingPageSize() {
+        final TargetInstancesPager<Integer> pager = new TargetInstancesPager<>((from, size) -> page(from, size, 42), 0, sizes(10, 5, 20), 1, executorService);
+
+        assertEquals(range(0, 42), collect(pager));
+        assertEquals(List.of(0, 10, 15, 35), requestedOffsets);
+    }
+
+    @Test
+    void concurrentPagesWithChangingPageSize() {
+        final TargetInstancesPager<Integer> pager = new TargetInstancesPager<>((from, size) -> page(from, size, 100), 0, sizes(10, 20, 5, 30), 3, executorService);
+
+        assertEquals(range(0, 100), collect(pager));
+        requestedOffsets.sort(Integer::compareTo);
+        assertEquals(List.of(0, 10, 30, 35, 65, 95), requestedOffsets);
+    }
+
+    @Test
+    void startAtOffset() {
+        final TargetInstancesPager<Integer> pager = new TargetInstancesPager<>((from, size) -> page(from, size, 25), 12, sizes(10), 3, executorService);
+
+        assertEquals(range(12, 25), collect(pager));
+        assertEquals(List.of(12, 22), requestedOffsets);
+    }
+
+    @Test
+    void emptyResult() {
+        final TargetInstancesPager<Integer> pager = new TargetInstancesPager<>((from, size) -> page(from, size, 0), 0, sizes(10), 3, executorService);
+
+        assertTrue(pager.hasNext());
+        assertTrue(pager.next().getTargetInstances().isEmpty());
+        assertFalse(pager.hasNext());
+    }
+
+    @Test
+    void failingPageIsRethrown() {
+        final TargetInstancesPager<Integer> pager = new TargetInstancesPager<>((from, size) -> {
+            if (from == 20) {
+                throw new IllegalStateException("Page at 20 failed");
+            }
+            return page(from, size, 50);
+        }, 0, sizes(10), 3, executorService);
+
+        assertEquals(0, pager.next().getFrom());
+        assertEquals(10, pager.next().getFrom());
+        assertThrows(IllegalStateException.class, pager::next);
+        assertFalse(pager.hasNext());
+    }
+}
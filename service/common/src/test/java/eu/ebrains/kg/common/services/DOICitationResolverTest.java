@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.services;
+
+import eu.ebrains.kg.common.services.resilience.CircuitBreakerOpenException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DOICitationResolverTest {
+
+    private static final String DOI = "https://doi.org/10.25493/ABC";
+
+    private final DOICitationFormatter formatter = mock(DOICitationFormatter.class);
+    private final DOICitationResolver resolver = new DOICitationResolver(formatter, 2, 60);
+
+    private String lookup() {
+        return formatter.getDOICitation(DOI, DOICitationResolver.DEFAULT_STYLE, DOICitationResolver.DEFAULT_CONTENT_TYPE);
+    }
+
+    @Test
+    void rememberUnresolvableDOI() {
+        when(lookup()).thenReturn(null);
+
+        assertNull(resolver.getCitation(DOI));
+        assertNull(resolver.getCitation(DOI));
+
+        verify(formatter, times(1)).getDOICitation(DOI, DOICitationResolver.DEFAULT_STYLE, DOICitationResolver.DEFAULT_CONTENT_TYPE);
+    }
+
+    @Test
+    void lookUpAgainAfterUnavailability() {
+        when(lookup()).thenThrow(WebClientResponseException.create(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable", null, null, null))
+                .thenThrow(new CircuitBreakerOpenException("doi"))
+                .thenReturn("Citation");
+
+        assertNull(resolver.getCitation(DOI));
+        assertNull(resolver.getCitation(DOI));
+        assertEquals("Citation", resolver.getCitation(DOI));
+    }
+
+    @Test
+    void refreshForgetsUnresolvableDOI() {
+        when(lookup()).thenReturn(null);
+        when(formatter.refreshDOICitation(DOI, DOICitationResolver.DEFAULT_STYLE, DOICitationResolver.DEFAULT_CONTENT_TYPE)).thenReturn("Citation");
+        resolver.getCitation(DOI);
+
+        assertEquals("Citation", resolver.refresh(DOI, DOICitationResolver.DEFAULT_STYLE, DOICitationResolver.DEFAULT_CONTENT_TYPE));
+        resolver.getCitation(DOI);
+
+        verify(formatter, times(2)).getDOICitation(DOI, DOICitationResolver.DEFAULT_STYLE, DOICitationResolver.DEFAULT_CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.services.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void openAfterConsecutiveFailures() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 3, Duration.ofMinutes(1));
+
+        assertFalse(circuitBreaker.onFailure());
+        assertFalse(circuitBreaker.onFailure());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.onFailure());
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 2, Duration.ofMinutes(1));
+
+        assertFalse(circuitBreaker.onFailure());
+        circuitBreaker.onSuccess();
+        assertFalse(circuitBreaker.onFailure());
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void closeAfterSuccessfulTrial() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 1, Duration.ZERO);
+        assertTrue(circuitBreaker.onFailure());
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire(), "Only a single trial request is let through");
+        circuitBreaker.onSuccess();
+
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void reopenAfterFailedTrial() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 3, Duration.ZERO);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.onFailure(), "A single failed trial opens the circuit again");
+        assertTrue(circuitBreaker.isOpen());
+    }
+
+    @Test
+    void cancelledTrialAllowsAnotherOne() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 1, Duration.ZERO);
+        circuitBreaker.onFailure();
+
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onCancel();
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdSetTest {
+
+    @Test
+    void addAndContains() {
+        IdSet ids = new IdSet(2, false);
+        final List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        uuids.forEach(ids::add);
+        assertTrue(ids.add("someId"));
+        assertFalse(ids.add(uuids.get(0)));
+        assertEquals(10001, ids.size());
+        uuids.forEach(uuid -> assertTrue(ids.contains(uuid)));
+        assertTrue(ids.contains("someId"));
+        assertFalse(ids.contains(UUID.randomUUID().toString()));
+        assertFalse(ids.contains(uuids.get(0).toUpperCase()));
+        assertEquals(new HashSet<>(ids.toList()).size(), ids.size());
+        assertTrue(ids.toList().containsAll(uuids));
+    }
+
+    @Test
+    void remove() {
+        //A small capacity to get long clusters of colliding entries
+        UUIDSet uuids = new UUIDSet(2, false);
+        final List<UUID> added = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            added.add(UUID.randomUUID());
+        }
+        added.forEach(uuids::add);
+        final Random random = new Random(42);
+        final List<UUID> removed = new ArrayList<>();
+        for (Iterator<UUID> iterator = added.iterator(); iterator.hasNext(); ) {
+            final UUID uuid = iterator.next();
+            if (random.nextBoolean()) {
+                assertTrue(uuids.remove(uuid));
+                iterator.remove();
+                removed.add(uuid);
+            }
+        }
+        assertFalse(uuids.remove(removed.get(0)));
+        assertEquals(added.size(), uuids.size());
+        added.forEach(uuid -> assertTrue(uuids.contains(uuid)));
+        removed.forEach(uuid -> assertFalse(uuids.contains(uuid)));
+
+        IdSet ids = new IdSet();
+        ids.add("someId");
+        ids.add(removed.get(0).toString());
+        ids.removeAll(List.of("someId", removed.get(0).toString(), "unknown"));
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    void nilUUID() {
+        UUIDSet uuids = new UUIDSet(16, true);
+        assertFalse(uuids.contains(0, 0));
+        assertTrue(uuids.add(new UUID(0, 0)));
+        assertFalse(uuids.add(0, 0));
+        assertTrue(uuids.contains(0, 0));
+        assertEquals(1, uuids.size());
+    }
+
+    @Test
+    void memoryFootprint() {
+        final int size = 100000;
+        final List<UUID> uuids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        //The strings are part of the footprint since they are kept by the set
+        final Set<String> strings = new HashSet<>();
+        uuids.forEach(uuid -> strings.add(uuid.toString()));
+        final long allocatedByHashSet = threads.getCurrentThreadAllocatedBytes() - before;
+
+        before = threads.getCurrentThreadAllocatedBytes();
+        final UUIDSet uuidSet = new UUIDSet(size, false);
+        uuids.forEach(uuidSet::add);
+        final long allocatedByUUIDSet = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(strings.size(), uuidSet.size());
+        assertTrue(allocatedByUUIDSet * 2 < allocatedByHashSet, String.format("UUIDSet: %d bytes, HashSet<String>: %d bytes", allocatedByUUIDSet, allocatedByHashSet));
+    }
+
+}
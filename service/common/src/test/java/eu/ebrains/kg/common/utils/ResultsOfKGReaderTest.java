@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.common.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.common.configuration.GracefulDeserializationProblemHandler;
+import eu.ebrains.kg.common.model.source.ResultsOfKG;
+import eu.ebrains.kg.common.model.source.SourceInstance;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultsOfKGReaderTest {
+
+    public static class Counter extends SourceInstance {
+        public Integer count;
+    }
+
+    private final ObjectMapper objectMapper;
+
+    ResultsOfKGReaderTest() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.objectMapper.addHandler(new GracefulDeserializationProblemHandler());
+    }
+
+    private ResultsOfKG<Counter> read(String json, List<Counter> instances) throws IOException {
+        return ResultsOfKGReader.read(objectMapper, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), Counter.class, instances::add);
+    }
+
+    @Test
+    void streamInstancesWithParsingErrors() throws IOException {
+        final String json = """
+                {
+                  "message": null,
+                  "data": [
+                    {"id": "https://kg.ebrains.eu/api/instances/a1", "count": 1},
+                    {"id": "https://kg.ebrains.eu/api/instances/b2", "count": "notANumber"},
+                    null,
+                    {"id": "https://kg.ebrains.eu/api/instances/c3", "count": 3, "unknown": {"nested": [1, 2]}}
+                  ],
+                  "somethingElse": {"nested": [1, 2]},
+                  "total": 10,
+                  "size": 3,
+                  "from": 2
+                }""";
+        final List<Counter> instances = new ArrayList<>();
+
+        final ResultsOfKG<Counter> result = read(json, instances);
+
+        assertEquals(List.of("a1", "b2", "c3"), instances.stream().map(SourceInstance::getUUID).toList());
+        assertEquals(Arrays.asList(1, null, 3), instances.stream().map(i -> i.count).toList());
+        //The instances are handed over to the consumer only
+        assertNull(result.getData());
+        assertEquals(10, result.getTotal());
+        assertEquals(3, result.getSize());
+        assertEquals(2, result.getFrom());
+        assertNotNull(result.getErrors());
+        assertEquals(Set.of("b2"), result.getErrors().keySet());
+        assertNull(GracefulDeserializationProblemHandler.ERROR_REPORTING_THREAD_LOCAL.get());
+    }
+
+    @Test
+    void noData() throws IOException {
+        final List<Counter> instances = new ArrayList<>();
+
+        final ResultsOfKG<Counter> result = read("{\"data\": null, \"total\": 0, \"from\": 0, \"size\": 0}", instances);
+
+        assertTrue(instances.isEmpty());
+        assertEquals(0, result.getTotal());
+        assertNull(result.getErrors());
+    }
+
+    @Test
+    void rejectNonObjectResponse() {
+        assertThrows(IOException.class, () -> read("[]", new ArrayList<>()));
+    }
+}
@@ -27,144 +27,143 @@ import eu.ebrains.kg.common.controller.translation.TranslatorRegistry;
 import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.ErrorReportResult;
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.indexing.controller.indexing.IndexingController;
+import eu.ebrains.kg.indexing.controller.indexing.TranslatorModelScheduler;
+import eu.ebrains.kg.indexing.controller.jobs.IndexingJob;
+import eu.ebrains.kg.indexing.controller.jobs.IndexingJobController;
 import io.swagger.v3.oas.annotations.Operation;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RequestMapping("/indexing")
 @RestController
 public class Indexing {
-    private final Logger logger = LoggerFactory.getLogger(getClass());
     private final IndexingController indexingController;
-    private final DOICitationFormatter doiCitationFormatter;
+    private final DOICitationResolver doiCitationResolver;
     private final TranslatorRegistry translatorRegistry;
+    private final TranslatorModelScheduler translatorModelScheduler;
+    private final IndexingJobController indexingJobController;
 
-    public Indexing(IndexingController indexingController, DOICitationFormatter doiCitationFormatter, TranslatorRegistry translatorRegistry) {
+    public Indexing(IndexingController indexingController, DOICitationResolver doiCitationResolver, TranslatorRegistry translatorRegistry, TranslatorModelScheduler translatorModelScheduler, IndexingJobController indexingJobController) {
         this.indexingController = indexingController;
-        this.doiCitationFormatter = doiCitationFormatter;
+        this.indexingJobController = indexingJobController;
+        this.translatorModelScheduler = translatorModelScheduler;
+        this.doiCitationResolver = doiCitationResolver;
         this.translatorRegistry = translatorRegistry;
     }
 
     @PostMapping("/doiCitations")
     public void refreshDOICitation(@RequestParam("doi") String doi, @RequestParam(value = "style", defaultValue = "apa") String style, @RequestParam(value = "contentType", defaultValue = "text/x-bibliography") String contentType){
-        this.doiCitationFormatter.refreshDOICitation(doi, style, contentType);
+        this.doiCitationResolver.refresh(doi, style, contentType);
     }
 
     @PostMapping("/evictDoiCitations")
     public void evictDoiCitations(Authentication token){
-        this.doiCitationFormatter.evictAll();
+        this.doiCitationResolver.evictAll();
     }
 
     @PostMapping
-    @Operation(summary="Full replacement")
-    public ResponseEntity<ErrorReportResult> fullReplacement(@RequestParam("databaseScope") DataStage dataStage) {
-        try {
-            indexingController.recreateIdentifiersIndex(dataStage);
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease()).map(m -> {
-                //In full replacement mode, we first create a temporary index
-                indexingController.recreateIndex(dataStage, m.getTargetClass(), m.isAutoRelease(), true);
-                //Which we're then going to populate.
-                final ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType = indexingController.populateIndex(m, dataStage, true);
-                //Eventually, we're reindexing the temporary index to the real one
-                indexingController.reindexTemporaryToReal(dataStage, m.getTargetClass(), m.isAutoRelease());
-                return errorsByTargetType;
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="Full replacement", description="Submits the indexing job - its status can be followed with the returned id. With resume, an interrupted full replacement is continued from its checkpoints")
+    public ResponseEntity<IndexingJob> fullReplacement(@RequestParam("databaseScope") DataStage dataStage, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(resume ? "fullReplacement (resumed)" : "fullReplacement", dataStage, job -> {
+            if (!resume) {
+                //The identifiers index is shared by all target types - so we have to recreate it before any of them starts
+                indexingController.recreateIdentifiersIndex(dataStage);
+            }
+            indexingController.reloadIdentifiers(dataStage);
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease()).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModelScheduler.run(translatorModels, m -> indexingController.fullReplacement(m, dataStage, job, resume));
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
     }
 
     @PostMapping("categories/{category}")
-    @Operation(summary="Full replacement by type")
-    public ResponseEntity<ErrorReportResult> fullReplacementByType(@RequestParam("databaseScope") DataStage dataStage, @PathVariable("category") String category) {
-        try {
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(m -> m.getTargetClass().getSimpleName().equals(category)).map(m -> {
-                //In full replacement mode, we first create a temporary index
-                indexingController.recreateIndex(dataStage, m.getTargetClass(), m.isAutoRelease(), true);
-                //Which we're then going to populate.
-                final ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType =  indexingController.populateIndex(m, dataStage, true);
-                //Eventually, we're reindexing the temporary index to the real one
-                indexingController.reindexTemporaryToReal(dataStage, m.getTargetClass(), m.isAutoRelease());
-                return errorsByTargetType;
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="Full replacement by type", description="Submits the indexing job - its status can be followed with the returned id")
+    public ResponseEntity<IndexingJob> fullReplacementByType(@RequestParam("databaseScope") DataStage dataStage, @PathVariable("category") String category, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(String.format("fullReplacement of %s%s", category, resume ? " (resumed)" : ""), dataStage, job -> {
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(m -> m.getTargetClass().getSimpleName().equals(category)).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModels.stream().map(m -> indexingController.fullReplacement(m, dataStage, job, resume)).filter(Objects::nonNull).collect(Collectors.toList());
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
     }
 
     @PostMapping("/autorelease")
-    @Operation(summary="full replacement auto release")
-    public ResponseEntity<ErrorReportResult> fullReplacementAutoRelease(@RequestParam("databaseScope") DataStage dataStage) {
-        try {
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(TranslatorModel::isAutoRelease).map(m -> {
-                indexingController.recreateIndex(dataStage, m.getTargetClass(), m.isAutoRelease(), true);
-                ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType = indexingController.populateIndex(m, dataStage, true);
-                indexingController.reindexTemporaryToReal(dataStage, m.getTargetClass(), m.isAutoRelease());
-                return errorsByTargetType;
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful autorelease indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="full replacement auto release", description="Submits the indexing job - its status can be followed with the returned id")
+    public ResponseEntity<IndexingJob> fullReplacementAutoRelease(@RequestParam("databaseScope") DataStage dataStage, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(String.format("fullReplacement of auto released types%s", resume ? " (resumed)" : ""), dataStage, job -> {
+            indexingController.reloadIdentifiers(dataStage);
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(TranslatorModel::isAutoRelease).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModelScheduler.run(translatorModels, m -> indexingController.fullReplacement(m, dataStage, job, resume));
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
     }
 
     @PutMapping
-    @Operation(summary="incremental update")
-    public ResponseEntity<ErrorReportResult> incrementalUpdate(@RequestParam("databaseScope") DataStage dataStage) {
-        try {
-//            ErrorReport rep = new ErrorReport();
-//            rep.put("44cfbba7-33d7-49bf-856d-e67b9335d51a", Collections.singletonList("foobar"));
-//            ErrorReportResult.ErrorReportResultByTargetType report = new ErrorReportResult.ErrorReportResultByTargetType();
-//            report.setTargetType("DatasetVersion");
-//            report.setErrors(rep);
-//            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget =Collections.singletonList(report);
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease()).map(m -> indexingController.populateIndex(m, dataStage, false)).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful incremental indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="incremental update", description="Submits the indexing job which processes the instances changed since the last run - all instances are processed (and deleted ones removed) if the periodic reconciliation is due or requested. With resume, an interrupted reconciliation is continued from its checkpoints")
+    public ResponseEntity<IndexingJob> incrementalUpdate(@RequestParam("databaseScope") DataStage dataStage, @RequestParam(value = "reconciliation", defaultValue = "false") boolean reconciliation, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(String.format("incrementalUpdate%s%s", reconciliation ? " with reconciliation" : "", resume ? " (resumed)" : ""), dataStage, job -> {
+            if (reconciliation) {
+                indexingController.reloadIdentifiers(dataStage);
+            }
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease()).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModelScheduler.run(translatorModels, m -> indexingController.incrementalUpdate(m, dataStage, reconciliation, job, resume));
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
     }
 
     @PutMapping("categories/{category}")
-    @Operation(summary="incremental update by type")
-    public ResponseEntity<ErrorReportResult> incrementalUpdateByType(@RequestParam("databaseScope") DataStage dataStage, @PathVariable("category") String category) {
-        try {
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease() && m.getTargetClass().getSimpleName().equals(category)).map(m -> indexingController.populateIndex(m, dataStage, false)).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful incremental indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="incremental update by type", description="Submits the indexing job - its status can be followed with the returned id")
+    public ResponseEntity<IndexingJob> incrementalUpdateByType(@RequestParam("databaseScope") DataStage dataStage, @PathVariable("category") String category, @RequestParam(value = "reconciliation", defaultValue = "false") boolean reconciliation, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(String.format("incrementalUpdate of %s%s%s", category, reconciliation ? " with reconciliation" : "", resume ? " (resumed)" : ""), dataStage, job -> {
+            if (reconciliation) {
+                indexingController.reloadIdentifiers(dataStage);
+            }
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(m -> !m.isAutoRelease() && m.getTargetClass().getSimpleName().equals(category)).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModels.stream().map(m -> indexingController.incrementalUpdate(m, dataStage, reconciliation, job, resume)).filter(Objects::nonNull).collect(Collectors.toList());
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
     }
 
     @PutMapping("/autorelease")
-    @Operation(summary="incremental auto release")
-    public ResponseEntity<ErrorReportResult> incrementalUpdateAutoRelease(@RequestParam("databaseScope") DataStage dataStage) {
-        try {
-            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorRegistry.getTranslators().stream().filter(TranslatorModel::isAutoRelease).map(m -> indexingController.populateIndex(m, dataStage, false)).filter(Objects::nonNull).collect(Collectors.toList());
-            return handleErrorReportResult(errorsByTarget);
-        } catch (WebClientResponseException e) {
-            logger.info("Unsuccessful incremental autorelease indexing", e);
-            return ResponseEntity.status(e.getStatusCode()).build();
-        }
+    @Operation(summary="incremental auto release", description="Submits the indexing job - its status can be followed with the returned id")
+    public ResponseEntity<IndexingJob> incrementalUpdateAutoRelease(@RequestParam("databaseScope") DataStage dataStage, @RequestParam(value = "reconciliation", defaultValue = "false") boolean reconciliation, @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        return submit(String.format("incrementalUpdate of auto released types%s%s", reconciliation ? " with reconciliation" : "", resume ? " (resumed)" : ""), dataStage, job -> {
+            if (reconciliation) {
+                indexingController.reloadIdentifiers(dataStage);
+            }
+            final List<TranslatorModel<?, ?>> translatorModels = translatorRegistry.getTranslators().stream().filter(TranslatorModel::isAutoRelease).toList();
+            final List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget = translatorModels.stream().map(m -> indexingController.incrementalUpdate(m, dataStage, reconciliation, job, resume)).filter(Objects::nonNull).collect(Collectors.toList());
+            return finish(translatorModels, dataStage, errorsByTarget);
+        });
+    }
+
+    @GetMapping("/jobs")
+    @Operation(summary="The queued, running and recently finished indexing jobs")
+    public List<IndexingJob> getJobs() {
+        return indexingJobController.getJobs();
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(summary="The status, progress and result of the indexing job")
+    public ResponseEntity<IndexingJob> getJob(@PathVariable("id") String id) {
+        final IndexingJob job = indexingJobController.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    @Operation(summary="Cancels the indexing job", description="A running job stops at the next page it writes")
+    public ResponseEntity<IndexingJob> cancelJob(@PathVariable("id") String id) {
+        final IndexingJob job = indexingJobController.cancel(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
     }
 
     @PutMapping(value = "/resources/{id}")
@@ -179,13 +178,26 @@ public class Indexing {
         indexingController.deleteResource(id);
     }
 
-    private ResponseEntity<ErrorReportResult> handleErrorReportResult(List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget) {
-        if (!errorsByTarget.isEmpty()) {
-            final ErrorReportResult result = new ErrorReportResult();
-            result.setErrorsByTarget(errorsByTarget);
-            return ResponseEntity.status(HttpStatus.OK).body(result);
+    private ResponseEntity<IndexingJob> submit(String name, DataStage dataStage, Function<IndexingJob, ErrorReportResult> task) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(indexingJobController.submit(name, dataStage, task));
+    }
+
+    /**
+     * All target types have been indexed - there is nothing to resume anymore
+     */
+    private ErrorReportResult finish(List<TranslatorModel<?, ?>> translatorModels, DataStage dataStage, List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget) {
+        indexingController.saveIdentifiersSnapshot(dataStage);
+        indexingController.removeCheckpoints(translatorModels, dataStage);
+        return toErrorReportResult(errorsByTarget);
+    }
+
+    private static ErrorReportResult toErrorReportResult(List<ErrorReportResult.ErrorReportResultByTargetType> errorsByTarget) {
+        if (errorsByTarget.isEmpty()) {
+            return null;
         }
-        return ResponseEntity.ok().build();
+        final ErrorReportResult result = new ErrorReportResult();
+        result.setErrorsByTarget(errorsByTarget);
+        return result;
     }
 
 
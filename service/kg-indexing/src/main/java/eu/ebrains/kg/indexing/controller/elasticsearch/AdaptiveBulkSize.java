@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+/**
+ * The number of bytes per bulk request, tuned AIMD-style: it grows additively as long as Elasticsearch responds
+ * within the target latency and is halved as soon as it's slower than that or rejects operations (429).
+ */
+class AdaptiveBulkSize {
+    private final long minBytes;
+    private final long maxBytes;
+    private final long increment;
+    private final long targetLatencyInMs;
+    private long currentBytes;
+
+    AdaptiveBulkSize(long initialBytes, long minBytes, long maxBytes, long targetLatencyInMs) {
+        this.minBytes = Math.max(1, minBytes);
+        this.maxBytes = Math.max(this.minBytes, maxBytes);
+        this.increment = this.minBytes;
+        this.targetLatencyInMs = targetLatencyInMs;
+        this.currentBytes = Math.min(this.maxBytes, Math.max(this.minBytes, initialBytes));
+    }
+
+    synchronized long get() {
+        return currentBytes;
+    }
+
+    synchronized void onSuccess(long latencyInMs) {
+        if (latencyInMs > targetLatencyInMs) {
+            decrease();
+        } else {
+            currentBytes = Math.min(maxBytes, currentBytes + increment);
+        }
+    }
+
+    synchronized void onRejection() {
+        decrease();
+    }
+
+    private void decrease() {
+        currentBytes = Math.max(minBytes, currentBytes / 2);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of bulk operations which is encoded as NDJSON chunk by chunk. Every operation is serialized directly as UTF-8
+ * into its own buffer of the pooled Netty allocator, so the payload is neither built as a String nor copied around.
+ * A chunk is closed as soon as its payload exceeds the requested number of bytes.
+ */
+class BulkOperations {
+
+    private static final byte[] INDEX = "{\"index\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE = "{\"update\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DELETE = "{\"delete\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_ACTION = "\"}}\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte NEW_LINE = '\n';
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(ALLOCATOR);
+
+    private static class Operation {
+        private final byte[] action;
+        private final String id;
+        private final Object document;
+
+        private Operation(byte[] action, String id, Object document) {
+            this.action = action;
+            this.id = id;
+            this.document = document;
+        }
+    }
+
+    /**
+     * The encoded operations of a single bulk request. The buffers are kept until the chunk is released so the
+     * request can be sent again.
+     */
+    static class Chunk {
+        private final List<String> ids = new ArrayList<>();
+        private final List<ByteBuf> buffers = new ArrayList<>();
+        private long bytes = 0;
+
+        private void add(String id, ByteBuf buffer) {
+            ids.add(id);
+            buffers.add(buffer);
+            bytes += buffer.readableBytes();
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        String getId(int index) {
+            return ids.get(index);
+        }
+
+        /**
+         * @return a new chunk with the operations at the given positions (e.g. to retry them). It holds its own
+         * references to the buffers and therefore needs to be released on its own.
+         */
+        Chunk subset(List<Integer> positions) {
+            final Chunk subset = new Chunk();
+            positions.forEach(p -> subset.add(ids.get(p), buffers.get(p).retain()));
+            return subset;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        BodyInserter<?, ? super ClientHttpRequest> body() {
+            //Netty consumes and releases the buffers it writes - we hand over retained duplicates to be able to retry
+            return BodyInserters.fromDataBuffers(Flux.fromIterable(buffers).<DataBuffer>map(b -> BUFFER_FACTORY.wrap(b.retainedDuplicate())));
+        }
+
+        void release() {
+            buffers.forEach(ByteBuf::release);
+            buffers.clear();
+        }
+    }
+
+    private final ObjectWriter objectWriter;
+    private final List<Operation> operations = new ArrayList<>();
+    private int position = 0;
+
+    BulkOperations(ObjectMapper objectMapper) {
+        this.objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    BulkOperations index(String id, Object document) {
+        operations.add(new Operation(INDEX, id, document));
+        return this;
+    }
+
+    /**
+     * Indexes an already serialized (JSON) document
+     */
+    BulkOperations index(String id, byte[] json) {
+        operations.add(new Operation(INDEX, id, json));
+        return this;
+    }
+
+    /**
+     * Partially updates the document with the given (serialized) update request (e.g. {"doc": {...}})
+     */
+    BulkOperations update(String id, byte[] json) {
+        operations.add(new Operation(UPDATE, id, json));
+        return this;
+    }
+
+    BulkOperations delete(String id) {
+        operations.add(new Operation(DELETE, id, null));
+        return this;
+    }
+
+    int size() {
+        return operations.size();
+    }
+
+    boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    boolean hasNextChunk() {
+        return position < operations.size();
+    }
+
+    /**
+     * @return the following operations up to the given number of bytes (an operation which is larger than that
+     * makes up a chunk on its own).
+     */
+    Chunk nextChunk(long maxBytes) {
+        final Chunk chunk = new Chunk();
+        try {
+            while (position < operations.size() && (chunk.size() == 0 || chunk.getBytes() < maxBytes)) {
+                final Operation operation = operations.get(position++);
+                chunk.add(operation.id, encode(operation));
+            }
+            return chunk;
+        } catch (RuntimeException e) {
+            chunk.release();
+            throw e;
+        }
+    }
+
+    private ByteBuf encode(Operation operation) {
+        final ByteBuf buffer = ALLOCATOR.buffer(INITIAL_BUFFER_SIZE);
+        try {
+            buffer.writeBytes(operation.action);
+            buffer.writeBytes(JsonStringEncoder.getInstance().quoteAsUTF8(operation.id));
+            buffer.writeBytes(END_OF_ACTION);
+            if (operation.document instanceof byte[] json) {
+                buffer.writeBytes(json);
+                buffer.writeByte(NEW_LINE);
+            } else if (operation.document != null) {
+                try (OutputStream outputStream = new ByteBufOutputStream(buffer)) {
+                    objectWriter.writeValue(outputStream, operation.document);
+                }
+                buffer.writeByte(NEW_LINE);
+            }
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw new RuntimeException(String.format("Was not able to serialize the bulk operation for %s", operation.id), e);
+        }
+    }
+}
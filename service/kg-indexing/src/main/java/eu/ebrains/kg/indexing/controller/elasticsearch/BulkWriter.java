@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import eu.ebrains.kg.common.model.ErrorReport;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Writes bulk operations to Elasticsearch with several bulk requests in flight. The size of the requests is adapted
+ * to the observed latency and rejections of the cluster (see {@link AdaptiveBulkSize}) and the throughput is exposed
+ * as metrics ("kg.indexing.bulk.*").
+ */
+@Component
+public class BulkWriter {
+    private static final int MAX_RETRIES = 5;
+    private static final long BASE_BACKOFF_IN_MS = 500;
+    private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ESServiceClient esServiceClient;
+    private final int maxConcurrentRequests;
+    private final AdaptiveBulkSize bulkSize;
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final Counter successfulRequests;
+    private final Counter rejectedRequests;
+    private final Counter operations;
+    private final Counter bytes;
+    private final Timer latency;
+
+    public BulkWriter(ESServiceClient esServiceClient, MeterRegistry meterRegistry, @Value("${ES_BULK_MAX_CONCURRENT_REQUESTS:4}") int maxConcurrentRequests, @Value("${ES_BULK_INITIAL_BYTES:1000000}") long initialBytes, @Value("${ES_BULK_MIN_BYTES:100000}") long minBytes, @Value("${ES_BULK_MAX_BYTES:20000000}") long maxBytes, @Value("${ES_BULK_TARGET_LATENCY_MS:2000}") long targetLatencyInMs) {
+        this.esServiceClient = esServiceClient;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.bulkSize = new AdaptiveBulkSize(initialBytes, minBytes, maxBytes, targetLatencyInMs);
+        this.successfulRequests = meterRegistry.counter("kg.indexing.bulk.requests", "outcome", "success");
+        this.rejectedRequests = meterRegistry.counter("kg.indexing.bulk.requests", "outcome", "rejected");
+        this.operations = meterRegistry.counter("kg.indexing.bulk.operations");
+        this.bytes = meterRegistry.counter("kg.indexing.bulk.bytes");
+        this.latency = meterRegistry.timer("kg.indexing.bulk.latency");
+        meterRegistry.gauge("kg.indexing.bulk.request.size.bytes", bulkSize, AdaptiveBulkSize::get);
+        meterRegistry.gauge("kg.indexing.bulk.requests.in.flight", requestsInFlight);
+    }
+
+    /**
+     * @return the operations which could not be written (by id) - failed items are retried as long as the failure is
+     * temporary (e.g. due to a rejection of the cluster).
+     */
+    ErrorReport write(String index, BulkOperations bulkOperations) {
+        logger.info(String.format("Updating index %s with %d operations", index, bulkOperations.size()));
+        final Semaphore permits = new Semaphore(maxConcurrentRequests);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Map<String, List<String>> failedItems = new ConcurrentHashMap<>();
+        final List<Future<?>> requests = new ArrayList<>();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                while (bulkOperations.hasNextChunk() && failure.get() == null) {
+                    permits.acquire();
+                    final BulkOperations.Chunk chunk;
+                    try {
+                        chunk = bulkOperations.nextChunk(bulkSize.get());
+                    } catch (RuntimeException e) {
+                        permits.release();
+                        throw e;
+                    }
+                    requests.add(executorService.submit(() -> {
+                        try {
+                            send(index, chunk, failedItems);
+                            return null;
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            chunk.release();
+                            permits.release();
+                        }
+                    }));
+                }
+                for (Future<?> request : requests) {
+                    request.get();
+                }
+            } catch (InterruptedException e) {
+                requests.forEach(r -> r.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(String.format("Interrupted while updating index %s", index), e);
+            } catch (ExecutionException e) {
+                requests.forEach(r -> r.cancel(true));
+                throw failure.get() != null ? failure.get() : new RuntimeException(e.getCause());
+            }
+        }
+        logger.info(String.format("Done updating index %s with %d bulk requests", index, requests.size()));
+        final ErrorReport errorReport = new ErrorReport();
+        errorReport.putAll(failedItems);
+        return errorReport;
+    }
+
+    private void send(String index, BulkOperations.Chunk chunk, Map<String, List<String>> failedItems) throws InterruptedException {
+        BulkOperations.Chunk pending = chunk;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                final List<Integer> retries = sendAndCollectRetries(index, pending, attempt < MAX_RETRIES, failedItems);
+                if (retries.isEmpty()) {
+                    return;
+                }
+                final BulkOperations.Chunk retry = pending.subset(retries);
+                if (pending != chunk) {
+                    pending.release();
+                }
+                pending = retry;
+                final long backoff = BASE_BACKOFF_IN_MS * (1L << attempt);
+                final long waitingTime = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                logger.warn("Retrying {} operations for index {} in {} ms", pending.size(), index, waitingTime);
+                Thread.sleep(waitingTime);
+            }
+        } finally {
+            if (pending != chunk) {
+                pending.release();
+            }
+        }
+    }
+
+    /**
+     * @return the positions of the operations in the chunk which have failed temporarily and should be sent again.
+     * Operations which have failed permanently (or temporarily but are not allowed to be retried anymore) are reported
+     * as failed items.
+     */
+    private List<Integer> sendAndCollectRetries(String index, BulkOperations.Chunk chunk, boolean retryAllowed, Map<String, List<String>> failedItems) {
+        final long start = System.nanoTime();
+        requestsInFlight.incrementAndGet();
+        final Map<?, ?> result;
+        try {
+            result = esServiceClient.bulk(index, chunk.body());
+        } catch (WebClientResponseException.TooManyRequests | WebClientResponseException.ServiceUnavailable e) {
+            rejectedRequests.increment();
+            bulkSize.onRejection();
+            final List<Integer> all = IntStream.range(0, chunk.size()).boxed().toList();
+            if (retryAllowed) {
+                return all;
+            }
+            all.forEach(i -> reportFailure(failedItems, index, chunk.getId(i), e.getStatusCode().value(), e.getMessage()));
+            return List.of();
+        } finally {
+            requestsInFlight.decrementAndGet();
+        }
+        final long durationInNs = System.nanoTime() - start;
+        latency.record(durationInNs, TimeUnit.NANOSECONDS);
+        successfulRequests.increment();
+        operations.increment(chunk.size());
+        bytes.increment(chunk.getBytes());
+        final List<Integer> retries = new ArrayList<>();
+        boolean rejected = false;
+        final List<Map<String, Map<String, Object>>> items = getItems(result);
+        for (int i = 0; i < items.size() && i < chunk.size(); i++) {
+            //The item is keyed by its operation ("index", "delete", ...)
+            for (Map<String, Object> itemResult : items.get(i).values()) {
+                if (itemResult.get("error") != null) {
+                    rejected |= isRejected(itemResult);
+                    if (retryAllowed && isRetryable(itemResult)) {
+                        retries.add(i);
+                    } else {
+                        logger.error(itemResult.toString());
+                        reportFailure(failedItems, index, chunk.getId(i), itemResult.get("status"), itemResult.get("error"));
+                    }
+                }
+            }
+        }
+        if (rejected) {
+            bulkSize.onRejection();
+        } else {
+            bulkSize.onSuccess(TimeUnit.NANOSECONDS.toMillis(durationInNs));
+        }
+        return retries;
+    }
+
+    private static void reportFailure(Map<String, List<String>> failedItems, String index, String id, Object status, Object error) {
+        String reason = error instanceof Map<?, ?> e ? String.format("%s: %s", e.get("type"), e.get("reason")) : String.valueOf(error);
+        failedItems.computeIfAbsent(id, k -> Collections.synchronizedList(new ArrayList<>())).add(String.format("Was not able to write to index %s (status %s) - %s", index, status, reason));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Map<String, Object>>> getItems(Map<?, ?> result) {
+        if (result != null && Boolean.TRUE.equals(result.get("errors")) && result.get("items") instanceof List) {
+            return (List<Map<String, Map<String, Object>>>) result.get("items");
+        }
+        return List.of();
+    }
+
+    private static boolean isRejected(Map<String, Object> itemResult) {
+        if (Integer.valueOf(429).equals(itemResult.get("status"))) {
+            return true;
+        }
+        return itemResult.get("error") instanceof Map<?, ?> error && REJECTED_EXECUTION.equals(error.get("type"));
+    }
+
+    private static boolean isRetryable(Map<String, Object> itemResult) {
+        return isRejected(itemResult) || Integer.valueOf(503).equals(itemResult.get("status"));
+    }
+}
@@ -25,54 +25,98 @@ package eu.ebrains.kg.indexing.controller.elasticsearch;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.ErrorReport;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
 import eu.ebrains.kg.common.model.target.TargetInstance;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.common.utils.IdSet;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.stream.Stream;
+
+import static eu.ebrains.kg.indexing.controller.mapping.MappingController.GENERATION;
 
 @Component
 public class ElasticSearchController {
+    private static final String CONTENT_HASH = "contentHash";
+    private static final long TASK_POLLING_INTERVAL_IN_MS = 1000;
+    private static final String IDENTIFIER = "identifier";
     private final ObjectMapper objectMapper = new ObjectMapper();
+    //The map entries are sorted to make the serialization (and therefore the content hash) deterministic
+    private final ObjectWriter documentWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
     private final ESServiceClient esServiceClient;
     private final ESHelper esHelper;
-    private final int ESOperationsMaxCharPayload = 1000000;
+    private final BulkWriter bulkWriter;
+    private final int forceMergeMaxNumSegments;
+    private final String waitForStatus;
+    private final String waitForStatusTimeout;
+    private final Duration deleteByQueryTimeout;
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    public ElasticSearchController(ESServiceClient esServiceClient, ESHelper esHelper) {
+    public ElasticSearchController(ESServiceClient esServiceClient, ESHelper esHelper, BulkWriter bulkWriter, @Value("${ES_FORCEMERGE_MAX_NUM_SEGMENTS:1}") int forceMergeMaxNumSegments, @Value("${ES_WAIT_FOR_STATUS:green}") String waitForStatus, @Value("${ES_WAIT_FOR_STATUS_TIMEOUT:5m}") String waitForStatusTimeout, @Value("${ES_DELETE_BY_QUERY_TIMEOUT_IN_MINUTES:60}") long deleteByQueryTimeoutInMinutes) {
         this.esServiceClient = esServiceClient;
+        this.bulkWriter = bulkWriter;
         this.esHelper = esHelper;
+        this.forceMergeMaxNumSegments = forceMergeMaxNumSegments;
+        this.waitForStatus = waitForStatus;
+        this.waitForStatusTimeout = waitForStatusTimeout;
+        this.deleteByQueryTimeout = Duration.ofMinutes(deleteByQueryTimeoutInMinutes);
+    }
+
+    /**
+     * Restores the live settings of a temporary index after its population, merges its segments and waits for the replicas to be allocated.
+     */
+    public void finishBulkLoad(Class<?> type, DataStage dataStage, boolean autorelease, Map<String, Object> liveSettings) {
+        String temporaryAlias = autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, true) : esHelper.getSearchableIndex(dataStage, type, true);
+        esServiceClient.updateIndexSettings(temporaryAlias, liveSettings);
+        esServiceClient.forceMerge(temporaryAlias, forceMergeMaxNumSegments);
+        if (!esServiceClient.waitForStatus(temporaryAlias, waitForStatus, waitForStatusTimeout)) {
+            //We don't fail since the index is searchable anyhow - it's just not fully replicated yet (or can't be, e.g. on a single node cluster)
+            logger.warn(String.format("Index %s didn't reach status %s within %s", temporaryAlias, waitForStatus, waitForStatusTimeout));
+        }
     }
 
 
-    public void reindexTemporaryToRealIndex(Class<?> type, DataStage dataStage, boolean autorelease){
-        String source =  autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, true) : esHelper.getSearchableIndex(dataStage, type, true);
-        String target = autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, false) :esHelper.getSearchableIndex(dataStage, type, false);
-        esServiceClient.reindex(source, target);
-        //We remove the temporary index after it has been reindexed.
-        esServiceClient.deleteIndex(source);
+    /**
+     * Atomically points the alias of the given type to the physical index populated through its temporary alias and removes the previously
+     * aliased index (or a concrete index of the same name from before the indexes were aliased) - readers therefore never see a partial index.
+     */
+    public void switchTemporaryToRealIndex(Class<?> type, DataStage dataStage, boolean autorelease) {
+        String temporaryAlias = autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, true) : esHelper.getSearchableIndex(dataStage, type, true);
+        String alias = autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, false) : esHelper.getSearchableIndex(dataStage, type, false);
+        final Set<String> newIndexes = esServiceClient.getIndexesOfAlias(temporaryAlias);
+        if (newIndexes.size() != 1) {
+            throw new IllegalStateException(String.format("Expected exactly one index behind %s but found %s", temporaryAlias, newIndexes));
+        }
+        final String newIndex = newIndexes.iterator().next();
+        final List<Map<String, Object>> actions = new ArrayList<>();
+        actions.add(Map.of("add", Map.of("index", newIndex, "alias", alias)));
+        actions.add(Map.of("remove", Map.of("index", newIndex, "alias", temporaryAlias)));
+        getPreviousIndexes(alias).forEach(previousIndex -> actions.add(Map.of("remove_index", Map.of("index", previousIndex))));
+        esServiceClient.updateAliases(actions);
+        logger.info(String.format("Switched alias %s to index %s", alias, newIndex));
     }
 
     public void recreateSearchIndex(Map<String, Object> mapping, Class<?> type, DataStage dataStage, boolean temporary) {
-        String index = esHelper.getSearchableIndex(dataStage, type, temporary);
-        logger.info(String.format("Creating index Was %s for %s", index, MetaModelUtils.getNameForClass(type)));
-        try {
-            esServiceClient.deleteIndex(index);
-        } catch (WebClientResponseException e) {
-            if(e.getStatusCode() != HttpStatus.NOT_FOUND) {
-                throw  e;
-            }
-        }
-        esServiceClient.createIndex(index, mapping);
-        logger.info(String.format("Successfully created index %s for %s", index, MetaModelUtils.getNameForClass(type)));
+        recreateAliasedIndex(esHelper.getSearchableIndex(dataStage, type, temporary), esHelper.getSearchableIndex(dataStage, type, false), mapping, type);
     }
 
     public void recreateIdentifiersIndex(Map<String, Object> mapping, DataStage dataStage) {
@@ -90,73 +134,211 @@ public class ElasticSearchController {
     }
 
     public void recreateAutoReleasedIndex(DataStage stage, Map<String, Object> mapping, Class<?> type, boolean temporary) {
-        String index = esHelper.getAutoReleasedIndex(stage, type, temporary);
-        logger.info(String.format("Creating index %s for %s", index, MetaModelUtils.getNameForClass(type)));
+        recreateAliasedIndex(esHelper.getAutoReleasedIndex(stage, type, temporary), esHelper.getAutoReleasedIndex(stage, type, false), mapping, type);
+    }
+
+    /**
+     * Creates a new versioned physical index for the given alias and removes the indexes the alias pointed to so far.
+     */
+    private void recreateAliasedIndex(String alias, String realAlias, Map<String, Object> mapping, Class<?> type) {
+        final String index = esHelper.getVersionedIndex(realAlias);
+        logger.info(String.format("Creating index %s (alias %s) for %s", index, alias, MetaModelUtils.getNameForClass(type)));
+        for (String previousIndex : getPreviousIndexes(alias)) {
+            esServiceClient.deleteIndex(previousIndex);
+        }
+        final Map<String, Object> payload = new HashMap<>(mapping);
+        payload.put("aliases", Map.of(alias, Collections.emptyMap()));
+        esServiceClient.createIndex(index, payload);
+        logger.info(String.format("Successfully created index %s (alias %s) for %s", index, alias, MetaModelUtils.getNameForClass(type)));
+    }
+
+    /**
+     * @return the indexes the alias points to or - if the name is still taken by a concrete index - the concrete index itself
+     */
+    private Set<String> getPreviousIndexes(String alias) {
+        final Set<String> indexes = esServiceClient.getIndexesOfAlias(alias);
+        if (indexes.isEmpty() && esServiceClient.checkIfIndexExists(alias)) {
+            return Set.of(alias);
+        }
+        return indexes;
+    }
+
+    /**
+     * Writes the given instances with their content hash. If unchanged documents shall be skipped, the hashes of the
+     * documents already in the index are fetched and only new or changed documents are written.
+     */
+    private ErrorReport updateIndex(String index, List<? extends TargetInstance> instances, boolean skipUnchanged, IndexingRun run) {
+        if (CollectionUtils.isEmpty(instances)) {
+            return new ErrorReport();
+        }
+        final Map<String, String> existingHashes = skipUnchanged ? esServiceClient.getSourceFieldOfDocuments(index, instances.stream().map(TargetInstance::getId).toList(), CONTENT_HASH) : Collections.emptyMap();
+        final byte[] generationUpdate = String.format("{\"doc\":{\"%s\":%d}}", GENERATION, run.getGeneration()).getBytes(StandardCharsets.UTF_8);
+        BulkOperations operations = new BulkOperations(objectMapper);
+        for (TargetInstance instance : instances) {
+            final HashedDocument document = serializeWithContentHash(instance, run.getGeneration());
+            if (document.hash.equals(existingHashes.get(instance.getId()))) {
+                if (run.isComplete()) {
+                    //The unchanged document has to survive the removal of the deprecated documents
+                    operations.update(instance.getId(), generationUpdate);
+                }
+                run.skipped();
+            } else {
+                operations.index(instance.getId(), document.json);
+                run.written();
+            }
+        }
+        if (!operations.isEmpty()) {
+            return bulkWriter.write(index, operations);
+        }
+        return new ErrorReport();
+    }
+
+    private static class HashedDocument {
+        private final byte[] json;
+        private final String hash;
+
+        private HashedDocument(byte[] json, String hash) {
+            this.json = json;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Serializes the instance and adds the hash of its serialization as an additional (not mapped) property as well as
+     * the generation of the indexing run.
+     */
+    private HashedDocument serializeWithContentHash(TargetInstance instance, long generation) {
         try {
-            esServiceClient.deleteIndex(index);
-        } catch (WebClientResponseException e) {
-            if(e.getStatusCode() != HttpStatus.NOT_FOUND) {
-                throw  e;
+            final byte[] json = documentWriter.writeValueAsBytes(instance);
+            final String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+            final byte[] additionalProperties = String.format("\"%s\":\"%s\",\"%s\":%d}", CONTENT_HASH, hash, GENERATION, generation).getBytes(StandardCharsets.UTF_8);
+            final ByteArrayOutputStream document = new ByteArrayOutputStream(json.length + additionalProperties.length);
+            //We replace the closing bracket of the object
+            document.write(json, 0, json.length - 1);
+            if (json.length > 2) {
+                document.write(',');
             }
+            document.writeBytes(additionalProperties);
+            return new HashedDocument(document.toByteArray(), hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
         }
-        esServiceClient.createIndex(index, mapping);
-        logger.info(String.format("Successfully created index %s for %s", index, MetaModelUtils.getNameForClass(type)));
     }
 
-    private List<StringBuilder> getInsertOperations(List<? extends TargetInstance> instances) {
-        List<StringBuilder> result = new ArrayList<>();
-        if (CollectionUtils.isEmpty(instances)) {
-            return result;
-        }
-        result.add(new StringBuilder());
-        instances.forEach(instance -> {
-            StringBuilder operations = result.get(result.size() - 1);
-            if (operations.length() > ESOperationsMaxCharPayload) {
-                operations = new StringBuilder();
-                result.add(operations);
+    /**
+     * Removes the documents of the given type which have not been written by the generation of the given run (or a later
+     * one). The deletion is executed as a sliced task in Elasticsearch which we're polling until it's done - if the job
+     * of the run is cancelled or the task doesn't finish in time, the task is cancelled.
+     *
+     * @param removedIdentifiers collects the identifiers of the removed documents
+     */
+    private ErrorReport removeDeprecatedDocuments(String index, Class<?> type, IndexingRun run, IdSet removedIdentifiers) {
+        final Map<String, Object> query = Map.of("bool", Map.of(
+                "filter", List.of(Map.of("term", Map.of("type.value", MetaModelUtils.getNameForClass(type)))),
+                "must_not", List.of(Map.of("range", Map.of(GENERATION, Map.of("gte", run.getGeneration()))))
+        ));
+        //The deletion only sees the documents which have been refreshed
+        esServiceClient.refresh(index);
+        final Map<String, List<String>> identifiersByDocument = new HashMap<>();
+        try (Stream<Document> deprecatedDocuments = esServiceClient.scan(index, query, List.of(IDENTIFIER))) {
+            deprecatedDocuments.forEach(document -> identifiersByDocument.put(document.getId(), getIdentifiers(document)));
+        }
+        final String task = esServiceClient.startDeleteByQuery(index, query);
+        final Instant deadline = Instant.now().plus(deleteByQueryTimeout);
+        boolean completed = false;
+        try {
+            Map<?, ?> status = esServiceClient.getTask(task);
+            while (status == null || !Boolean.TRUE.equals(status.get("completed"))) {
+                run.checkCancellation();
+                if (Instant.now().isAfter(deadline)) {
+                    throw new RuntimeException(String.format("The removal of the deprecated documents of %s from index %s has not finished within %d minutes", MetaModelUtils.getNameForClass(type), index, deleteByQueryTimeout.toMinutes()));
+                }
+                Thread.sleep(TASK_POLLING_INTERVAL_IN_MS);
+                status = esServiceClient.getTask(task);
             }
-            operations.append(String.format("{ \"index\" : { \"_id\" : \"%s\" } } \n", instance.getId()));
-            try {
-                operations.append(objectMapper.writeValueAsString(instance)).append("\n");
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException(e);
+            completed = true;
+            if (status.get("error") != null) {
+                throw new RuntimeException(String.format("Was not able to remove the deprecated documents of %s from index %s - %s", MetaModelUtils.getNameForClass(type), index, status.get("error")));
             }
-        });
-        return result;
-    }
-
-    private List<StringBuilder> getDeleteOperations(String index, Class<?> type, Set<String> idsToKeep) {
-        List<StringBuilder> result = new ArrayList<>();
-        result.add(new StringBuilder());
-        List<String> ids = esServiceClient.getDocumentIds(index, type);
-        ids.forEach(id -> {
-            StringBuilder operations = result.get(result.size() - 1);
-            if (operations.length() > ESOperationsMaxCharPayload) {
-                operations = new StringBuilder();
-                result.add(operations);
+            final ErrorReport errorReport = new ErrorReport();
+            if (status.get("response") instanceof Map<?, ?> response) {
+                logger.info(String.format("Removed %s deprecated documents of %s from index %s", response.get("deleted"), MetaModelUtils.getNameForClass(type), index));
+                if (response.get("failures") instanceof List<?> failures) {
+                    failures.forEach(f -> {
+                        if (f instanceof Map<?, ?> failure) {
+                            errorReport.computeIfAbsent(String.valueOf(failure.get("id")), k -> new ArrayList<>()).add(String.format("Was not able to remove the document from index %s - %s", index, failure.get("cause")));
+                        }
+                    });
+                }
             }
-            if(!idsToKeep.contains(id)) {
-                operations.append(String.format("{ \"delete\" : { \"_id\" : \"%s\" } } \n", id));
+            identifiersByDocument.forEach((id, identifiers) -> {
+                if (!errorReport.containsKey(id)) {
+                    removedIdentifiers.addAll(identifiers);
+                }
+            });
+            return errorReport;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (!completed) {
+                esServiceClient.cancelTask(task);
             }
-        });
-        if (result.get(result.size() - 1).length() == 0) {
-            result.remove(result.size() - 1);
-        };
-        return result;
+        }
     }
 
-    private void updateIndex(String index, List<? extends TargetInstance> instances) {
-        List<StringBuilder> operationsList = getInsertOperations(instances);
-        if (!CollectionUtils.isEmpty(operationsList)) {
-            esServiceClient.updateIndex(index, operationsList);
+    public boolean temporaryIndexExists(Class<?> type, DataStage dataStage, boolean autorelease) {
+        return esServiceClient.checkIfIndexExists(autorelease ? esHelper.getAutoReleasedIndex(dataStage, type, true) : esHelper.getSearchableIndex(dataStage, type, true));
+    }
+
+    /**
+     * Makes sure the generation is mapped in the indexes of the given type - a document without a generation is
+     * considered to be deprecated.
+     */
+    public void addGenerationMapping(Class<?> type, DataStage dataStage, boolean autorelease, boolean temporary, Map<String, Object> generationMapping) {
+        final Map<String, Object> properties = Map.of(GENERATION, generationMapping);
+        if (autorelease) {
+            esServiceClient.addMappingProperties(esHelper.getAutoReleasedIndex(dataStage, type, temporary), properties);
+        } else {
+            esServiceClient.addMappingProperties(esHelper.getSearchableIndex(dataStage, type, temporary), properties);
+            esServiceClient.addMappingProperties(esHelper.getIdentifierIndex(dataStage), properties);
         }
     }
 
-    private void removeDeprecatedDocuments(String index,  Class<?> type, Set<String> idsToKeep) {
-        List<StringBuilder> operationsList = getDeleteOperations(index, type, idsToKeep);
-        if (!CollectionUtils.isEmpty(operationsList)) {
-            esServiceClient.updateIndex(index, operationsList);
+    /**
+     * Removes the documents with the given ids - if they exist. The existing documents are looked up in chunks of
+     * {@link ESServiceClient#ES_QUERY_SIZE} ids.
+     *
+     * @param removedIdentifiers collects the identifiers of the removed documents
+     */
+    private ErrorReport removeDocuments(String index, IdSet ids, IdSet removedIdentifiers) {
+        if (ids.isEmpty()) {
+            return new ErrorReport();
+        }
+        BulkOperations operations = new BulkOperations(objectMapper);
+        final List<String> idList = ids.toList();
+        final Map<String, Document> existingDocuments = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += ESServiceClient.ES_QUERY_SIZE) {
+            existingDocuments.putAll(esServiceClient.getDocumentsByNativeIds(index, idList.subList(from, Math.min(from + ESServiceClient.ES_QUERY_SIZE, idList.size())), List.of(IDENTIFIER)));
         }
+        existingDocuments.keySet().forEach(operations::delete);
+        if (!operations.isEmpty()) {
+            final ErrorReport errorReport = bulkWriter.write(index, operations);
+            existingDocuments.forEach((id, document) -> {
+                if (!errorReport.containsKey(id)) {
+                    removedIdentifiers.addAll(getIdentifiers(document));
+                }
+            });
+            return errorReport;
+        }
+        return new ErrorReport();
+    }
+
+    private static List<String> getIdentifiers(Document document) {
+        if (document.getSource() != null && document.getSource().get(IDENTIFIER) instanceof List<?> identifiers) {
+            return identifiers.stream().filter(Objects::nonNull).map(Object::toString).toList();
+        }
+        return Collections.emptyList();
     }
 
     public void ensureResourcesIndex(){
@@ -184,31 +366,38 @@ public class ElasticSearchController {
     }
 
 
-    public void updateSearchIndex(List<? extends TargetInstance> instances, Class<?> type, DataStage dataStage, boolean temporary) {
-        updateIndex(esHelper.getSearchableIndex(dataStage, type, temporary), instances);
+    public ErrorReport updateSearchIndex(List<? extends TargetInstance> instances, Class<?> type, DataStage dataStage, boolean temporary, IndexingRun run) {
+        //A temporary index is populated from scratch - there is nothing to compare with
+        return updateIndex(esHelper.getSearchableIndex(dataStage, type, temporary), instances, !temporary, run);
     }
 
-    public void updateIdentifiersIndex(List<? extends TargetInstance> instances, DataStage dataStage) {
-        updateIndex(esHelper.getIdentifierIndex(dataStage), instances);
+    public ErrorReport updateIdentifiersIndex(List<? extends TargetInstance> instances, DataStage dataStage, boolean skipUnchanged, IndexingRun run) {
+        return updateIndex(esHelper.getIdentifierIndex(dataStage), instances, skipUnchanged, run);
     }
 
-    public void updateAutoReleasedIndex(List<? extends TargetInstance> instances, DataStage dataStage, Class<?> type, boolean temporary) {
-        updateIndex(esHelper.getAutoReleasedIndex(dataStage, type, temporary), instances);
+    public ErrorReport updateAutoReleasedIndex(List<? extends TargetInstance> instances, DataStage dataStage, Class<?> type, boolean temporary, IndexingRun run) {
+        return updateIndex(esHelper.getAutoReleasedIndex(dataStage, type, temporary), instances, !temporary, run);
     }
 
-    public void removeDeprecatedDocumentsFromSearchIndex( Class<?> type, DataStage dataStage, Set<String> idsToKeep, boolean temporary) {
-        removeDeprecatedDocuments(esHelper.getSearchableIndex(dataStage, type, temporary), type, idsToKeep);
+    public ErrorReport removeDocumentsFromSearchIndex(Class<?> type, DataStage dataStage, IdSet ids, IdSet removedIdentifiers) {
+        return removeDocuments(esHelper.getSearchableIndex(dataStage, type, false), ids, removedIdentifiers);
     }
 
-    public void removeDeprecatedDocumentsFromIdentifiersIndex(Class<?> type, DataStage dataStage, Set<String> idsToKeep) {
-        removeDeprecatedDocuments(esHelper.getIdentifierIndex(dataStage), type, idsToKeep);
+    public ErrorReport removeDocumentsFromIdentifiersIndex(DataStage dataStage, IdSet ids, IdSet removedIdentifiers) {
+        return removeDocuments(esHelper.getIdentifierIndex(dataStage), ids, removedIdentifiers);
     }
 
-    public void removeDeprecatedDocumentsFromAutoReleasedIndex(Class<?> type, DataStage dataStage, Set<String> idsToKeep, boolean temporary) {
-        removeDeprecatedDocuments(esHelper.getAutoReleasedIndex(dataStage, type, temporary), type, idsToKeep);
+    public ErrorReport removeDeprecatedDocumentsFromSearchIndex(Class<?> type, DataStage dataStage, boolean temporary, IndexingRun run, IdSet removedIdentifiers) {
+        return removeDeprecatedDocuments(esHelper.getSearchableIndex(dataStage, type, temporary), type, run, removedIdentifiers);
     }
 
+    public ErrorReport removeDeprecatedDocumentsFromIdentifiersIndex(Class<?> type, DataStage dataStage, IndexingRun run, IdSet removedIdentifiers) {
+        return removeDeprecatedDocuments(esHelper.getIdentifierIndex(dataStage), type, run, removedIdentifiers);
+    }
 
+    public ErrorReport removeDeprecatedDocumentsFromAutoReleasedIndex(Class<?> type, DataStage dataStage, boolean temporary, IndexingRun run, IdSet removedIdentifiers) {
+        return removeDeprecatedDocuments(esHelper.getAutoReleasedIndex(dataStage, type, temporary), type, run, removedIdentifiers);
+    }
 
 }
 
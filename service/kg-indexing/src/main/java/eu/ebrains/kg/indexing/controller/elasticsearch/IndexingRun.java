@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import eu.ebrains.kg.indexing.controller.jobs.IndexingJob;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The writes of an indexing run of a target type: every document written is stamped with the generation of the run, so
+ * the documents which haven't been written (or confirmed as unchanged) by a complete run can be removed afterwards.
+ * The documents sent to Elasticsearch and the ones skipped because their content hash didn't change are counted.
+ * A run is failed if a page couldn't be queried or documents couldn't be written - not all of its instances are indexed.
+ */
+@Getter
+public class IndexingRun {
+    private final long generation;
+    private final boolean complete;
+    @Getter(AccessLevel.NONE)
+    private final IndexingJob job;
+    private int written;
+    private int skipped;
+    private volatile boolean failed;
+
+    /**
+     * @param complete if the run processes all instances - the unchanged documents need to be stamped with the generation
+     *                 as well since the documents of older generations are removed at the end of the run.
+     * @param job      the job the run belongs to - long-running operations check for its cancellation
+     */
+    public IndexingRun(long generation, boolean complete, IndexingJob job) {
+        this.generation = generation;
+        this.complete = complete;
+        this.job = job;
+    }
+
+    void checkCancellation() {
+        job.checkCancellation();
+    }
+
+    void written() {
+        written++;
+    }
+
+    void skipped() {
+        skipped++;
+    }
+
+    public void failed() {
+        failed = true;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.indexing.controller.elasticsearch.ElasticSearchController;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps track of the progress of the complete indexing runs (full replacements and reconciliations) per target type
+ * and stage so an interrupted run can be resumed: For every query, the offset up to which the pages have been written
+ * is stored together with the generation of the run (so the documents written before the interruption are not
+ * considered deprecated) and the collected badges.
+ * The checkpoints are stored in the resources index - at most once per configured interval and whenever a query is
+ * completed.
+ */
+@Component
+public class IndexingCheckpointController {
+
+    private static final String GENERATION = "generation";
+    private static final String STARTED_AT = "startedAt";
+    private static final String TEMPORARY = "temporary";
+    private static final String FINISHED = "finished";
+    private static final String NEXT_FROM_BY_QUERY_ID = "nextFromByQueryId";
+    private static final String COMPLETED_QUERY_IDS = "completedQueryIds";
+    private static final String BADGES = "badges";
+
+    private final ESServiceClient esServiceClient;
+    private final ESHelper esHelper;
+    private final ElasticSearchController elasticSearchController;
+    private final Duration checkpointInterval;
+
+    public IndexingCheckpointController(ESServiceClient esServiceClient, ESHelper esHelper, ElasticSearchController elasticSearchController, @Value("${INDEXING_CHECKPOINT_INTERVAL_IN_SECONDS:30}") long checkpointIntervalInSeconds) {
+        this.esServiceClient = esServiceClient;
+        this.esHelper = esHelper;
+        this.elasticSearchController = elasticSearchController;
+        this.checkpointInterval = Duration.ofSeconds(checkpointIntervalInSeconds);
+    }
+
+    @Getter
+    public static class Checkpoint {
+        private final long generation;
+        private final Instant startedAt;
+        private final boolean temporary;
+        private boolean finished;
+        private final Map<String, Integer> nextFromByQueryId;
+        private final Set<String> completedQueryIds;
+        private final Map<String, Object> badges;
+        private Instant savedAt;
+
+        private Checkpoint(long generation, Instant startedAt, boolean temporary, boolean finished, Map<String, Integer> nextFromByQueryId, Set<String> completedQueryIds, Map<String, Object> badges) {
+            this.generation = generation;
+            this.startedAt = startedAt;
+            this.temporary = temporary;
+            this.finished = finished;
+            this.nextFromByQueryId = nextFromByQueryId;
+            this.completedQueryIds = completedQueryIds;
+            this.badges = badges;
+            this.savedAt = Instant.now();
+        }
+
+        public int getNextFrom(String queryId) {
+            return nextFromByQueryId.getOrDefault(queryId, 0);
+        }
+
+        public boolean isCompleted(String queryId) {
+            return completedQueryIds.contains(queryId);
+        }
+    }
+
+    /**
+     * @param temporary true if the run populates the temporary index (full replacement)
+     */
+    public Checkpoint start(DataStage dataStage, Class<?> type, boolean temporary) {
+        final Instant now = Instant.now();
+        final Checkpoint checkpoint = new Checkpoint(now.toEpochMilli(), now, temporary, false, new HashMap<>(), new HashSet<>(), new HashMap<>());
+        save(dataStage, type, checkpoint);
+        return checkpoint;
+    }
+
+    private String getCheckpointId(DataStage dataStage, Class<?> type) {
+        return String.format("indexingCheckpoint_%s_%s", dataStage, type.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Checkpoint getCheckpoint(DataStage dataStage, Class<?> type) {
+        try {
+            final Document document = esServiceClient.getDocumentByNativeId(esHelper.getResourcesIndex(), getCheckpointId(dataStage, type));
+            final Map<String, Object> source = document != null ? document.getSource() : null;
+            if (source == null || !(source.get(GENERATION) instanceof Number generation) || !(source.get(STARTED_AT) instanceof String startedAt)) {
+                return null;
+            }
+            final Map<String, Integer> nextFromByQueryId = new HashMap<>();
+            if (source.get(NEXT_FROM_BY_QUERY_ID) instanceof Map<?, ?> nextFroms) {
+                nextFroms.forEach((queryId, from) -> nextFromByQueryId.put(queryId.toString(), ((Number) from).intValue()));
+            }
+            final Set<String> completedQueryIds = new HashSet<>();
+            if (source.get(COMPLETED_QUERY_IDS) instanceof List<?> completed) {
+                completed.forEach(queryId -> completedQueryIds.add(queryId.toString()));
+            }
+            final Map<String, Object> badges = source.get(BADGES) instanceof Map<?, ?> b ? new HashMap<>((Map<String, Object>) b) : new HashMap<>();
+            return new Checkpoint(generation.longValue(), Instant.parse(startedAt), Boolean.TRUE.equals(source.get(TEMPORARY)), Boolean.TRUE.equals(source.get(FINISHED)), nextFromByQueryId, completedQueryIds, badges);
+        } catch (WebClientResponseException.NotFound e) {
+            return null;
+        }
+    }
+
+    /**
+     * Registers the written page - the checkpoint is stored if the last one is older than the configured interval
+     */
+    public void pageWritten(DataStage dataStage, Class<?> type, Checkpoint checkpoint, String queryId, int nextFrom) {
+        checkpoint.nextFromByQueryId.put(queryId, nextFrom);
+        if (checkpoint.savedAt.plus(checkpointInterval).isBefore(Instant.now())) {
+            save(dataStage, type, checkpoint);
+        }
+    }
+
+    public void queryCompleted(DataStage dataStage, Class<?> type, Checkpoint checkpoint, String queryId) {
+        checkpoint.completedQueryIds.add(queryId);
+        save(dataStage, type, checkpoint);
+    }
+
+    /**
+     * Marks the run of the target type as finished - a resumed indexing skips it. The checkpoint is removed once all
+     * target types of the indexing are done (see {@link #remove(DataStage, Class)}).
+     */
+    public void finished(DataStage dataStage, Class<?> type, Checkpoint checkpoint) {
+        checkpoint.finished = true;
+        save(dataStage, type, checkpoint);
+    }
+
+    public void remove(DataStage dataStage, Class<?> type) {
+        elasticSearchController.deleteResource(getCheckpointId(dataStage, type));
+    }
+
+    private void save(DataStage dataStage, Class<?> type, Checkpoint checkpoint) {
+        Map<String, Object> document = new HashMap<>();
+        document.put(GENERATION, checkpoint.generation);
+        document.put(STARTED_AT, checkpoint.startedAt.toString());
+        document.put(TEMPORARY, checkpoint.temporary);
+        document.put(FINISHED, checkpoint.finished);
+        document.put(NEXT_FROM_BY_QUERY_ID, checkpoint.nextFromByQueryId);
+        document.put(COMPLETED_QUERY_IDS, checkpoint.completedQueryIds);
+        document.put(BADGES, checkpoint.badges);
+        elasticSearchController.addResource(getCheckpointId(dataStage, type), document);
+        checkpoint.savedAt = Instant.now();
+    }
+}
@@ -24,30 +24,43 @@
 package eu.ebrains.kg.indexing.controller.indexing;
 
 import eu.ebrains.kg.common.controller.kg.KG;
+import eu.ebrains.kg.common.controller.translation.AdaptivePageSize;
+import eu.ebrains.kg.common.controller.translation.TargetInstancesPager;
 import eu.ebrains.kg.common.controller.translation.TranslationController;
 import eu.ebrains.kg.common.controller.translation.models.TargetInstancesResult;
 import eu.ebrains.kg.common.controller.translation.models.Translator;
 import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
+import eu.ebrains.kg.common.controller.translation.utils.IdentifierRegistry;
 import eu.ebrains.kg.common.controller.translation.utils.ReferenceResolver;
+import eu.ebrains.kg.common.controller.translation.utils.TranslationUtils;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.ErrorReport;
 import eu.ebrains.kg.common.model.ErrorReportResult;
+import eu.ebrains.kg.common.model.source.ResultsOfKG;
 import eu.ebrains.kg.common.model.source.SourceInstance;
 import eu.ebrains.kg.common.model.target.HasBadges;
 import eu.ebrains.kg.common.model.target.TargetInstance;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.common.utils.IdSet;
 import eu.ebrains.kg.common.utils.TranslatorUtils;
 import eu.ebrains.kg.indexing.controller.elasticsearch.ElasticSearchController;
+import eu.ebrains.kg.indexing.controller.elasticsearch.IndexingRun;
+import eu.ebrains.kg.indexing.controller.jobs.IndexingJob;
 import eu.ebrains.kg.indexing.controller.mapping.MappingController;
 import eu.ebrains.kg.indexing.controller.metrics.MetricsController;
+import eu.ebrains.kg.indexing.controller.queries.QueryController;
 import eu.ebrains.kg.indexing.controller.settings.SettingsController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -65,11 +78,26 @@ public class IndexingController {
 
     private final ReferenceResolver referenceResolver;
 
+    private final IdentifierRegistry identifierRegistry;
+
+    private final IndexingStateController indexingStateController;
+
+    private final IndexingCheckpointController indexingCheckpointController;
+
+    private final KGPageSizeController kgPageSizeController;
+
+
     private final KG kgV3;
 
     private final static Logger logger = LoggerFactory.getLogger(IndexingController.class);
 
-    public IndexingController(MappingController mappingController, MetricsController metricsController, SettingsController settingsController, ElasticSearchController elasticSearchController, TranslationController translationController, KG kgV3, ESServiceClient esServiceClient, ESHelper esHelper, ReferenceResolver referenceResolver) {
+    private final int pipelineQueueSize;
+
+    private final int pipelineMaxInstancesInMemory;
+
+    private final int maxConcurrentRequestsPerQuery;
+
+    public IndexingController(MappingController mappingController, MetricsController metricsController, SettingsController settingsController, ElasticSearchController elasticSearchController, TranslationController translationController, KG kgV3, ESServiceClient esServiceClient, ESHelper esHelper, ReferenceResolver referenceResolver, IdentifierRegistry identifierRegistry, IndexingStateController indexingStateController, IndexingCheckpointController indexingCheckpointController, KGPageSizeController kgPageSizeController, @Value("${INDEXING_PIPELINE_QUEUE_SIZE:2}") int pipelineQueueSize, @Value("${INDEXING_PIPELINE_MAX_INSTANCES_IN_MEMORY:5000}") int pipelineMaxInstancesInMemory, @Value("${KG_MAX_CONCURRENT_REQUESTS_PER_QUERY:4}") int maxConcurrentRequestsPerQuery) {
         this.mappingController = mappingController;
         this.metricsController = metricsController;
         this.settingsController = settingsController;
@@ -78,105 +106,304 @@ public class IndexingController {
         this.esServiceClient = esServiceClient;
         this.esHelper = esHelper;
         this.referenceResolver = referenceResolver;
+        this.identifierRegistry = identifierRegistry;
+        this.indexingStateController = indexingStateController;
+        this.indexingCheckpointController = indexingCheckpointController;
+        this.kgPageSizeController = kgPageSizeController;
         this.kgV3 = kgV3;
+        this.pipelineQueueSize = pipelineQueueSize;
+        this.pipelineMaxInstancesInMemory = pipelineMaxInstancesInMemory;
+        this.maxConcurrentRequestsPerQuery = maxConcurrentRequestsPerQuery;
+    }
+
+    /**
+     * @param resume if true, the interrupted full replacement is continued on its temporary index (if there is one)
+     */
+    public <Input extends SourceInstance, Target extends TargetInstance> ErrorReportResult.ErrorReportResultByTargetType fullReplacement(TranslatorModel<Input, Target> translatorModel, DataStage dataStage, IndexingJob job, boolean resume) {
+        job.checkCancellation();
+        final Class<Target> type = translatorModel.getTargetClass();
+        IndexingCheckpointController.Checkpoint checkpoint = resume ? indexingCheckpointController.getCheckpoint(dataStage, type) : null;
+        if (checkpoint != null && checkpoint.isTemporary() && checkpoint.isFinished()) {
+            logger.info("Skipping {} in {} since it has been indexed before the interruption", type.getSimpleName(), dataStage);
+            return null;
+        }
+        if (checkpoint != null && checkpoint.isTemporary() && elasticSearchController.temporaryIndexExists(type, dataStage, translatorModel.isAutoRelease())) {
+            logger.info("Resuming the full replacement of {} in {} started at {}", type.getSimpleName(), dataStage, checkpoint.getStartedAt());
+        } else {
+            //In full replacement mode, we first create a temporary index
+            recreateIndex(dataStage, type, translatorModel.isAutoRelease(), true);
+            checkpoint = indexingCheckpointController.start(dataStage, type, true);
+        }
+        //Which we're then going to populate.
+        final IndexingRun run = new IndexingRun(checkpoint.getGeneration(), true, job);
+        final ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType = populateIndex(translatorModel, dataStage, true, Collections.emptyMap(), run, job, checkpoint);
+        //Eventually, we're switching the alias of the real index to the populated one
+        switchTemporaryToReal(dataStage, type, translatorModel.isAutoRelease());
+        //A full replacement is a reconciliation as well
+        saveState(dataStage, type, run, checkpoint.getStartedAt(), checkpoint.getStartedAt());
+        indexingCheckpointController.finished(dataStage, type, checkpoint);
+        return errorsByTargetType;
+    }
+
+    /**
+     * Updates the live index with the instances which have changed since the last run. If the reconciliation is due (or
+     * forced), all instances are processed and the documents of deleted instances are removed. Otherwise, the variants
+     * of the queries restricted to the instances released since the high water mark are executed (see
+     * {@link QueryController#getChangedSinceQueryId(String)}) - since there is no such timestamp for the changes of
+     * unreleased instances, the IN_PROGRESS stage is always reconciled.
+     *
+     * @param resume if true, an interrupted reconciliation is continued
+     */
+    public <Input extends SourceInstance, Target extends TargetInstance> ErrorReportResult.ErrorReportResultByTargetType incrementalUpdate(TranslatorModel<Input, Target> translatorModel, DataStage dataStage, boolean forceReconciliation, IndexingJob job, boolean resume) {
+        job.checkCancellation();
+        final Class<Target> type = translatorModel.getTargetClass();
+        IndexingCheckpointController.Checkpoint checkpoint = resume ? indexingCheckpointController.getCheckpoint(dataStage, type) : null;
+        if (checkpoint != null && checkpoint.isTemporary()) {
+            //The checkpoint belongs to a full replacement
+            checkpoint = null;
+        }
+        if (checkpoint != null && checkpoint.isFinished()) {
+            logger.info("Skipping {} in {} since it has been indexed before the interruption", type.getSimpleName(), dataStage);
+            return null;
+        }
+        final IndexingStateController.IndexingState state = indexingStateController.getState(dataStage, type);
+        final boolean restrictable = translatorModel.getTranslator() != null && dataStage == DataStage.RELEASED;
+        final boolean reconciliation = checkpoint != null || forceReconciliation || !restrictable || indexingStateController.isReconciliationDue(state, Instant.now());
+        if (checkpoint != null) {
+            logger.info("Resuming the reconciliation of {} in {} started at {}", type.getSimpleName(), dataStage, checkpoint.getStartedAt());
+        } else if (reconciliation) {
+            checkpoint = indexingCheckpointController.start(dataStage, type, false);
+        }
+        final Instant start = checkpoint != null ? checkpoint.getStartedAt() : Instant.now();
+        //A resumed run keeps its generation - otherwise, the documents written before the interruption would be deprecated
+        final IndexingRun run = new IndexingRun(checkpoint != null ? checkpoint.getGeneration() : System.currentTimeMillis(), reconciliation, job);
+        final ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType = populateIndex(translatorModel, dataStage, false, reconciliation ? Collections.emptyMap() : indexingStateController.getChangedSinceParameters(state), run, job, checkpoint);
+        saveState(dataStage, type, run, start, reconciliation ? start : state.getLastReconciliation());
+        if (checkpoint != null) {
+            indexingCheckpointController.finished(dataStage, type, checkpoint);
+        }
+        return errorsByTargetType;
+    }
+
+    /**
+     * The high water mark is only moved if all instances have been indexed - otherwise, the instances of the pages which
+     * couldn't be queried (or written) would be skipped by the following runs until the next reconciliation.
+     */
+    private void saveState(DataStage dataStage, Class<?> type, IndexingRun run, Instant highWaterMark, Instant lastReconciliation) {
+        if (run.isFailed()) {
+            logger.warn("Keeping the indexing state of {} in {} since not all instances have been indexed", type.getSimpleName(), dataStage);
+        } else {
+            indexingStateController.saveState(dataStage, type, highWaterMark, lastReconciliation);
+        }
+    }
+
+    /**
+     * Removes the checkpoints of the given target types - to be called once all of them have been indexed
+     */
+    public void removeCheckpoints(List<TranslatorModel<?, ?>> translatorModels, DataStage dataStage) {
+        translatorModels.forEach(m -> indexingCheckpointController.remove(dataStage, m.getTargetClass()));
     }
 
-    public <Input extends SourceInstance, Target extends TargetInstance> ErrorReportResult.ErrorReportResultByTargetType populateIndex(TranslatorModel<Input, Target> translatorModel, DataStage dataStage, boolean temporary) {
-        ErrorReportResult.ErrorReportResultByTargetType errorReportByTargetType =  null;
-        Set<String> searchableIds = new HashSet<>();
-        Set<String> nonSearchableIds = new HashSet<>();
+    /**
+     * @param queryParameters if not empty, the queries are restricted (e.g. to the changed instances) - the result is
+     *                        therefore not complete and neither the deprecated documents nor the badges can be handled.
+     * @param checkpoint      the checkpoint of a complete run - the progress is tracked with it (and a resumed run continues from it)
+     */
+    private <Input extends SourceInstance, Target extends TargetInstance> ErrorReportResult.ErrorReportResultByTargetType populateIndex(TranslatorModel<Input, Target> translatorModel, DataStage dataStage, boolean temporary, Map<String, String> queryParameters, IndexingRun run, IndexingJob job, IndexingCheckpointController.Checkpoint checkpoint) {
+        final boolean complete = queryParameters.isEmpty();
+        if (complete) {
+            elasticSearchController.addGenerationMapping(translatorModel.getTargetClass(), dataStage, translatorModel.isAutoRelease(), temporary, mappingController.getGenerationMapping());
+        }
+        ErrorReport errors = new ErrorReport();
+        IdSet searchableIds = new IdSet();
+        IdSet nonSearchableIds = new IdSet();
+        IdSet writtenIdentifiers = new IdSet();
+        final IdSet removedIdentifiers = new IdSet();
         if (translatorModel.getTranslator() != null) {
-            final UpdateResult updateResultV3 = update(kgV3, translatorModel.getTargetClass(), translatorModel.getTranslator(), translatorModel.getBulkSize(), dataStage, Collections.emptySet(), instance -> instance, translatorModel.isAutoRelease(), temporary);
-            if (!updateResultV3.errors.isEmpty()) {
-                errorReportByTargetType = new ErrorReportResult.ErrorReportResultByTargetType();
-                errorReportByTargetType.setTargetType(translatorModel.getTranslator().getTargetType().getSimpleName());
-                errorReportByTargetType.setErrors(updateResultV3.errors);
-            }
-            searchableIds.addAll(updateResultV3.searchableIds);
-            nonSearchableIds.addAll(updateResultV3.nonSearchableIds);
-            if(!updateResultV3.badges.isEmpty()) {
+            final UpdateResult updateResultV3 = update(kgV3, translatorModel.getTargetClass(), translatorModel.getTranslator(), translatorModel.getBulkSize(), dataStage, queryParameters, run, job, checkpoint, Collections.emptySet(), instance -> instance, translatorModel.isAutoRelease(), temporary);
+            mergeErrors(errors, updateResultV3.errors);
+            logger.info("Indexed {} in {}: {} documents written, {} unchanged documents skipped", translatorModel.getTargetClass().getSimpleName(), dataStage, run.getWritten(), run.getSkipped());
+            searchableIds = updateResultV3.searchableIds;
+            nonSearchableIds = updateResultV3.nonSearchableIds;
+            writtenIdentifiers = updateResultV3.writtenIdentifiers;
+            if(complete && !updateResultV3.badges.isEmpty()) {
                 kgV3.persistBadges(translatorModel.getTranslator().getTargetType().getSimpleName(), updateResultV3.badges);
             }
         }
-        if (translatorModel.isAutoRelease()) {
-            elasticSearchController.removeDeprecatedDocumentsFromAutoReleasedIndex(translatorModel.getTargetClass(), dataStage, nonSearchableIds, temporary);
+        if (!complete) {
+            if (!translatorModel.isAutoRelease()) {
+                //Instances might have switched between being searchable and non-searchable
+                mergeErrors(errors, elasticSearchController.removeDocumentsFromSearchIndex(translatorModel.getTargetClass(), dataStage, nonSearchableIds, removedIdentifiers));
+                mergeErrors(errors, elasticSearchController.removeDocumentsFromIdentifiersIndex(dataStage, searchableIds, removedIdentifiers));
+            }
+        } else if (translatorModel.isAutoRelease()) {
+            mergeErrors(errors, elasticSearchController.removeDeprecatedDocumentsFromAutoReleasedIndex(translatorModel.getTargetClass(), dataStage, temporary, run, removedIdentifiers));
         } else {
-            elasticSearchController.removeDeprecatedDocumentsFromSearchIndex(translatorModel.getTargetClass(), dataStage, searchableIds, temporary);
-            elasticSearchController.removeDeprecatedDocumentsFromIdentifiersIndex(translatorModel.getTargetClass(), dataStage, nonSearchableIds);
+            mergeErrors(errors, elasticSearchController.removeDeprecatedDocumentsFromSearchIndex(translatorModel.getTargetClass(), dataStage, temporary, run, removedIdentifiers));
+            mergeErrors(errors, elasticSearchController.removeDeprecatedDocumentsFromIdentifiersIndex(translatorModel.getTargetClass(), dataStage, run, removedIdentifiers));
         }
+        unregisterRemovedIdentifiers(dataStage, removedIdentifiers, writtenIdentifiers);
+        if (errors.isEmpty()) {
+            return null;
+        }
+        ErrorReportResult.ErrorReportResultByTargetType errorReportByTargetType = new ErrorReportResult.ErrorReportResultByTargetType();
+        errorReportByTargetType.setTargetType(translatorModel.getTranslator() != null ? translatorModel.getTranslator().getTargetType().getSimpleName() : translatorModel.getTargetClass().getSimpleName());
+        errorReportByTargetType.setErrors(errors);
         return errorReportByTargetType;
     }
 
+    /**
+     * The identifiers of the removed documents can't be referenced anymore - unless they belong to a document which
+     * has been written by this run as well (e.g. an instance which has moved between the search and the identifiers index)
+     */
+    private void unregisterRemovedIdentifiers(DataStage dataStage, IdSet removedIdentifiers, IdSet writtenIdentifiers) {
+        if (!removedIdentifiers.isEmpty()) {
+            identifierRegistry.getIdentifiers(dataStage).removeAll(removedIdentifiers.toList().stream().filter(identifier -> !writtenIdentifiers.contains(identifier)).toList());
+        }
+    }
+
+    private static void mergeErrors(ErrorReport target, ErrorReport errors) {
+        if (errors != null) {
+            errors.forEach((id, e) -> target.computeIfAbsent(id, k -> new ArrayList<>()).addAll(e));
+        }
+    }
+
     private static class UpdateResult {
-        private final Set<String> searchableIds = new HashSet<>();
-        private final Set<String> nonSearchableIds = new HashSet<>();
+        private final IdSet searchableIds = new IdSet();
+        private final IdSet nonSearchableIds = new IdSet();
+        private final IdSet writtenIdentifiers = new IdSet();
         private final ErrorReport errors = new ErrorReport();
+        private final IndexingRun run;
+        private final IndexingJob job;
+        private final IndexingCheckpointController.Checkpoint checkpoint;
+
+        private final Map<String, Object> badges;
 
-        private final Map<String, Object> badges = new HashMap<>();
+        private UpdateResult(IndexingRun run, IndexingJob job, IndexingCheckpointController.Checkpoint checkpoint) {
+            this.run = run;
+            this.job = job;
+            this.checkpoint = checkpoint;
+            //The badges are part of the checkpoint to not lose the ones collected before an interruption
+            this.badges = checkpoint != null ? checkpoint.getBadges() : new HashMap<>();
+        }
     }
 
 
     private static final List<String> relevantBadges = Arrays.asList(TranslatorUtils.IS_NEW_BADGE, TranslatorUtils.IS_TRENDING_BADGE);
-    private <Target extends TargetInstance> UpdateResult update(KG kg, Class<?> type, Translator<? extends SourceInstance, Target, ?> translator, int bulkSize, DataStage dataStage, Set<String> excludedIds, Function<Target, Target> instanceHandler, boolean autorelease, boolean temporary) {
-        UpdateResult updateResult = new UpdateResult();
+    private <Target extends TargetInstance> UpdateResult update(KG kg, Class<?> type, Translator<? extends SourceInstance, Target, ?> translator, int bulkSize, DataStage dataStage, Map<String, String> queryParameters, IndexingRun run, IndexingJob job, IndexingCheckpointController.Checkpoint checkpoint, Set<String> excludedIds, Function<Target, Target> instanceHandler, boolean autorelease, boolean temporary) {
+        UpdateResult updateResult = new UpdateResult(run, job, checkpoint);
         final Map<String, Object> translationContext = translator.populateTranslationContext(esServiceClient, esHelper, dataStage);
         final Integer trendThreshold = metricsController.getTrendThreshold(type, dataStage);
-        final Set<String> existingIdentifiers = referenceResolver.loadAllExistingIdentifiers(dataStage);
-        translator.getQueryIds().forEach(queryId -> {
-            Integer lastTotal = null;
-            boolean hasMore = true;
-            int from = 0;
-            while (hasMore) {
-                TargetInstancesResult<Target> result = translationController.translateToTargetInstances(kg, translator, queryId, dataStage, from, bulkSize, trendThreshold, translationContext);
-                if (result.getErrors() != null) {
-                    updateResult.errors.putAll(result.getErrors());
-                }
-                List<Target> instances = result.getTargetInstances();
-                if (instances != null) {
-                    List<Target> searchableInstances = new ArrayList<>();
-                    List<Target> nonSearchableInstances = new ArrayList<>();
-                    final List<Target> processableInstances = instances.stream().filter(instance -> !excludedIds.contains(instance.getId())).collect(Collectors.toList());
-                    referenceResolver.clearNonResolvableReferences(processableInstances, existingIdentifiers);
-                    processableInstances.forEach(instance -> {
-                        logger.info("Translating instance {}", instance.getId());
-                        Target handledInstance = instanceHandler != null ? instanceHandler.apply(instance) : instance;
-                        if (handledInstance.isSearchableInstance()) {
-                            updateResult.searchableIds.add(handledInstance.getId());
-                            searchableInstances.add(handledInstance);
-                        } else {
-                            updateResult.nonSearchableIds.add(handledInstance.getId());
-                            nonSearchableInstances.add(handledInstance);
-                        }
-                        if(handledInstance instanceof HasBadges){
-                            final List<String> badges = ((HasBadges) handledInstance).getBadges();
-                            if(badges != null){
-                                badges.stream().filter(relevantBadges::contains).forEach(badge -> {
-                                    String qualifiedProperty = String.format("https://search.kg.ebrains.eu/vocab/badges/%s", badge);
-                                    updateResult.badges.computeIfAbsent(qualifiedProperty, k -> new ArrayList<>());
-                                    ((List)updateResult.badges.get(qualifiedProperty)).add(Map.of("@id", String.format("https://kg.ebrains.eu/api/instances/%s", handledInstance.getId())));
-                                });
-                            }
+        final IdentifierRegistry.Identifiers existingIdentifiers = identifierRegistry.getIdentifiers(dataStage);
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            final IndexingPipeline pipeline = new IndexingPipeline(executorService, pipelineQueueSize, pipelineMaxInstancesInMemory);
+            translator.getQueryIds().forEach(queryId -> processQuery(pipeline, executorService, kg, type, translator, queryParameters.isEmpty() ? queryId : QueryController.getChangedSinceQueryId(queryId), bulkSize, dataStage, queryParameters, excludedIds, instanceHandler, autorelease, temporary, translationContext, trendThreshold, existingIdentifiers, updateResult));
+        }
+        return updateResult;
+    }
+
+    /**
+     * The pages of the given query are fetched and written in a pipeline: While page N is written to Elasticsearch,
+     * page N+1 is queried from the KG (and translated instance by instance while its response is streamed). Once the
+     * total number of instances is known, the following pages are queried concurrently (but still handed over to the
+     * writer in order). The page size is adapted to the response times of the KG (see {@link KGPageSizeController}).
+     */
+    private <Source extends SourceInstance, Target extends TargetInstance> void processQuery(IndexingPipeline pipeline, ExecutorService executorService, KG kg, Class<?> type, Translator<Source, Target, ? extends ResultsOfKG<Source>> translator, String queryId, int bulkSize, DataStage dataStage, Map<String, String> queryParameters, Set<String> excludedIds, Function<Target, Target> instanceHandler, boolean autorelease, boolean temporary, Map<String, Object> translationContext, Integer trendThreshold, IdentifierRegistry.Identifiers existingIdentifiers, UpdateResult updateResult) {
+        final IndexingCheckpointController.Checkpoint checkpoint = updateResult.checkpoint;
+        if (checkpoint != null && checkpoint.isCompleted(queryId)) {
+            logger.info("Skipping query {} of {} since it has been completed before the interruption", queryId, type.getSimpleName());
+            return;
+        }
+        final int from = checkpoint != null ? checkpoint.getNextFrom(queryId) : 0;
+        final AdaptivePageSize pageSize = kgPageSizeController.getPageSize(dataStage, queryId, bulkSize);
+        final TargetInstancesPager<Target> pages = translationController.queryTargetInstancePages(kg, translator, queryId, dataStage, from, pageSize, queryParameters, trendThreshold, translationContext, maxConcurrentRequestsPerQuery, executorService);
+        try {
+            pipeline.<TargetInstancesResult<Target>, TargetInstancesResult<Target>>run(pageSize::get, pages, Function.identity(),
+                    result -> {
+                        write(result, translator, type, dataStage, excludedIds, instanceHandler, autorelease, temporary, existingIdentifiers, updateResult);
+                        if (checkpoint != null && result.getFrom() != null && result.getSize() != null) {
+                            indexingCheckpointController.pageWritten(dataStage, type, checkpoint, queryId, result.getFrom() + result.getSize());
                         }
                     });
-                    if (!CollectionUtils.isEmpty(searchableInstances)) {
-                        elasticSearchController.updateSearchIndex(searchableInstances, type, dataStage, temporary);
-                    }
-                    if (!CollectionUtils.isEmpty(nonSearchableInstances)) {
-                        if (autorelease) {
-                            elasticSearchController.updateAutoReleasedIndex(nonSearchableInstances, dataStage, type, temporary);
-                        } else {
-                            elasticSearchController.updateIdentifiersIndex(nonSearchableInstances, dataStage);
-                        }
+        } finally {
+            kgPageSizeController.save(dataStage, queryId, pageSize);
+        }
+        if (checkpoint != null) {
+            indexingCheckpointController.queryCompleted(dataStage, type, checkpoint, queryId);
+        }
+    }
+
+    private <Target extends TargetInstance> void write(TargetInstancesResult<Target> result, Translator<?, Target, ?> translator, Class<?> type, DataStage dataStage, Set<String> excludedIds, Function<Target, Target> instanceHandler, boolean autorelease, boolean temporary, IdentifierRegistry.Identifiers existingIdentifiers, UpdateResult updateResult) {
+        updateResult.job.checkCancellation();
+        if (result.isSkipped()) {
+            updateResult.run.failed();
+        }
+        if (result.getErrors() != null) {
+            updateResult.errors.putAll(result.getErrors());
+        }
+        List<Target> instances = result.getTargetInstances();
+        if (instances != null) {
+            List<Target> searchableInstances = new ArrayList<>();
+            List<Target> nonSearchableInstances = new ArrayList<>();
+            final List<Target> processableInstances = instances.stream().filter(instance -> !excludedIds.contains(instance.getId())).collect(Collectors.toList());
+            referenceResolver.clearNonResolvableReferences(processableInstances, existingIdentifiers);
+            processableInstances.forEach(instance -> {
+                logger.info("Translating instance {}", instance.getId());
+                Target handledInstance = instanceHandler != null ? instanceHandler.apply(instance) : instance;
+                if (handledInstance.isSearchableInstance()) {
+                    updateResult.searchableIds.add(handledInstance.getId());
+                    searchableInstances.add(handledInstance);
+                } else {
+                    updateResult.nonSearchableIds.add(handledInstance.getId());
+                    nonSearchableInstances.add(handledInstance);
+                }
+                if(handledInstance instanceof HasBadges){
+                    final List<String> badges = ((HasBadges) handledInstance).getBadges();
+                    if(badges != null){
+                        badges.stream().filter(relevantBadges::contains).forEach(badge -> {
+                            String qualifiedProperty = String.format("https://search.kg.ebrains.eu/vocab/badges/%s", badge);
+                            updateResult.badges.computeIfAbsent(qualifiedProperty, k -> new ArrayList<>());
+                            ((List)updateResult.badges.get(qualifiedProperty)).add(Map.of("@id", String.format("https://kg.ebrains.eu/api/instances/%s", handledInstance.getId())));
+                        });
                     }
                 }
-                if (result.getTotal() != null) {
-                    lastTotal = result.getTotal();
+            });
+            final ErrorReport writeErrors = new ErrorReport();
+            if (!CollectionUtils.isEmpty(searchableInstances)) {
+                mergeErrors(writeErrors, elasticSearchController.updateSearchIndex(searchableInstances, type, dataStage, temporary, updateResult.run));
+            }
+            if (!CollectionUtils.isEmpty(nonSearchableInstances)) {
+                if (autorelease) {
+                    mergeErrors(writeErrors, elasticSearchController.updateAutoReleasedIndex(nonSearchableInstances, dataStage, type, temporary, updateResult.run));
+                } else {
+                    mergeErrors(writeErrors, elasticSearchController.updateIdentifiersIndex(nonSearchableInstances, dataStage, !temporary, updateResult.run));
                 }
-                from = result.getFrom() + result.getSize();
-                hasMore = lastTotal != null && from < lastTotal;
             }
-        });
-        return updateResult;
+            if (!writeErrors.isEmpty()) {
+                updateResult.run.failed();
+            }
+            mergeErrors(updateResult.errors, writeErrors);
+            translator.instancesWritten(processableInstances, dataStage);
+            updateResult.job.reportProgress(type.getSimpleName(), TranslationUtils.getStats(result.getTotal(), result.getFrom() != null ? result.getFrom() : 0, instances.size()));
+            //The written instances can be referenced from now on - the ones which failed to be written can't
+            processableInstances.forEach(instance -> {
+                if (instance.getIdentifier() != null && !writeErrors.containsKey(instance.getId())) {
+                    existingIdentifiers.addAll(instance.getIdentifier());
+                    updateResult.writtenIdentifiers.addAll(instance.getIdentifier());
+                }
+            });
+        }
+    }
+
+    /**
+     * Loads the identifiers of the stage from the indexes to get rid of the ones of removed documents
+     */
+    public void reloadIdentifiers(DataStage dataStage) {
+        identifierRegistry.reload(dataStage);
+    }
+
+    public void saveIdentifiersSnapshot(DataStage dataStage) {
+        identifierRegistry.saveSnapshot(dataStage);
     }
 
     public void recreateIdentifiersIndex(DataStage dataStage) {
@@ -186,21 +413,27 @@ public class IndexingController {
     }
 
 
-    public void reindexTemporaryToReal(DataStage dataStage, Class<? extends TargetInstance> clazz, boolean autorelease) {
-        recreateIndex(dataStage, clazz, autorelease, false);
-        elasticSearchController.reindexTemporaryToRealIndex(clazz, dataStage, autorelease);
+    public void switchTemporaryToReal(DataStage dataStage, Class<? extends TargetInstance> clazz, boolean autorelease) {
+        elasticSearchController.finishBulkLoad(clazz, dataStage, autorelease, settingsController.generateLiveSettings());
+        elasticSearchController.switchTemporaryToRealIndex(clazz, dataStage, autorelease);
     }
 
     public void recreateIndex(DataStage dataStage, Class<? extends TargetInstance> clazz, boolean autorelease, boolean temporary) {
         Map<String, Object> mapping = mappingController.generateMapping(clazz, !autorelease);
+        Map<String, Object> settings = new HashMap<>();
+        if (!autorelease) {
+            settings.putAll(settingsController.generateSearchIndexSettings());
+        }
+        if (temporary) {
+            //The temporary index is populated from scratch and restored to the live settings in switchTemporaryToReal
+            settings.putAll(settingsController.generateBulkLoadSettings());
+        }
+        Map<String, Object> payload = settings.isEmpty() ? Map.of("mappings", mapping) : Map.of(
+                "mappings", mapping,
+                "settings", settings);
         if (autorelease) {
-            Map<String, Object> payload = Map.of("mappings", mapping);
             elasticSearchController.recreateAutoReleasedIndex(dataStage, payload, clazz, temporary);
         } else {
-            Map<String, Object> settings = settingsController.generateSearchIndexSettings();
-            Map<String, Object> payload = Map.of(
-                    "mappings", mapping,
-                    "settings", settings);
             elasticSearchController.recreateSearchIndex(payload, clazz, dataStage, temporary);
         }
     }
@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * A three-staged pipeline (fetch -> translate -> write) connected by bounded queues. The fetch and the translation
+ * stage are running in their own (virtual) threads whereas the write stage is executed by the calling thread.
+ * Since every stage is processed by a single thread, the order of the pages is kept.
+ *
+ * The number of instances held in memory by the pipeline is limited by a memory budget: a permit per instance of a page
+ * is acquired before the page is fetched and is only released once the page has been written.
+ */
+class IndexingPipeline {
+    private final static Logger logger = LoggerFactory.getLogger(IndexingPipeline.class);
+
+    private final static Object END = new Object();
+
+    private final ExecutorService executorService;
+    private final int queueCapacity;
+    private final Semaphore memoryBudget;
+    private final int maxInstancesInMemory;
+
+    IndexingPipeline(ExecutorService executorService, int queueCapacity, int maxInstancesInMemory) {
+        this.executorService = executorService;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxInstancesInMemory = Math.max(1, maxInstancesInMemory);
+        this.memoryBudget = new Semaphore(this.maxInstancesInMemory);
+    }
+
+    private static class Item<T> {
+        private final T payload;
+        private final int permits;
+
+        private Item(T payload, int permits) {
+            this.payload = payload;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * @param instancesPerPage the (current) number of instances per page - it is read before every page is fetched
+     */
+    @SuppressWarnings("unchecked")
+    <F, T> void run(IntSupplier instancesPerPage, Iterator<F> source, Function<F, T> translate, Consumer<T> write) {
+        final BlockingQueue<Object> fetched = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Object> translated = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Future<?> fetchStage = executorService.submit(() -> {
+            try {
+                while (source.hasNext() && failure.get() == null) {
+                    final int permitsPerPage = Math.min(Math.max(1, instancesPerPage.getAsInt()), maxInstancesInMemory);
+                    memoryBudget.acquire(permitsPerPage);
+                    fetched.put(new Item<>(source.next(), permitsPerPage));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                putEnd(fetched);
+            }
+        });
+        final Future<?> translateStage = executorService.submit(() -> {
+            try {
+                Object item;
+                while ((item = fetched.take()) != END) {
+                    final Item<F> page = (Item<F>) item;
+                    if (failure.get() == null) {
+                        translated.put(new Item<>(translate.apply(page.payload), page.permits));
+                    } else {
+                        memoryBudget.release(page.permits);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                drain(fetched);
+            } finally {
+                putEnd(translated);
+            }
+        });
+        try {
+            Object item;
+            while ((item = translated.take()) != END) {
+                final Item<T> page = (Item<T>) item;
+                try {
+                    if (failure.get() == null) {
+                        write.accept(page.payload);
+                    }
+                } finally {
+                    memoryBudget.release(page.permits);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (failure.get() != null) {
+                fetchStage.cancel(true);
+                translateStage.cancel(true);
+            }
+        }
+        final Throwable throwable = failure.get();
+        if (throwable != null) {
+            logger.error("Indexing pipeline has been aborted", throwable);
+            if (throwable instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (throwable instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    private void drain(BlockingQueue<Object> queue) {
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof Item<?>) {
+                memoryBudget.release(((Item<?>) item).permits);
+            }
+        }
+    }
+
+    private static void putEnd(BlockingQueue<Object> queue) {
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.indexing.controller.elasticsearch.ElasticSearchController;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the incremental indexing runs per target type and stage: The high water mark (the start of the last
+ * successful run) allows to query only the instances which have changed since then, whereas a periodic reconciliation
+ * (a complete run) takes care of deleted instances and of changes which are not reflected by the modification date of
+ * the queried instance itself (e.g. of linked instances).
+ * The state is stored in the resources index.
+ */
+@Component
+public class IndexingStateController {
+
+    public static final String CHANGED_SINCE_PARAMETER = "changedSince";
+    private static final String HIGH_WATER_MARK = "highWaterMark";
+    private static final String LAST_RECONCILIATION = "lastReconciliation";
+
+    private final ESServiceClient esServiceClient;
+    private final ESHelper esHelper;
+    private final ElasticSearchController elasticSearchController;
+    private final Duration reconciliationInterval;
+    private final Duration highWaterMarkOverlap;
+
+    public IndexingStateController(ESServiceClient esServiceClient, ESHelper esHelper, ElasticSearchController elasticSearchController, @Value("${INDEXING_RECONCILIATION_INTERVAL_IN_MINUTES:1440}") long reconciliationIntervalInMinutes, @Value("${INDEXING_HIGH_WATER_MARK_OVERLAP_IN_SECONDS:300}") long highWaterMarkOverlapInSeconds) {
+        this.esServiceClient = esServiceClient;
+        this.esHelper = esHelper;
+        this.elasticSearchController = elasticSearchController;
+        this.reconciliationInterval = Duration.ofMinutes(reconciliationIntervalInMinutes);
+        this.highWaterMarkOverlap = Duration.ofSeconds(highWaterMarkOverlapInSeconds);
+    }
+
+    @Getter
+    public static class IndexingState {
+        private final Instant highWaterMark;
+        private final Instant lastReconciliation;
+
+        private IndexingState(Instant highWaterMark, Instant lastReconciliation) {
+            this.highWaterMark = highWaterMark;
+            this.lastReconciliation = lastReconciliation;
+        }
+    }
+
+    private String getStateId(DataStage dataStage, Class<?> type) {
+        return String.format("indexingState_%s_%s", dataStage, type.getSimpleName());
+    }
+
+    public IndexingState getState(DataStage dataStage, Class<?> type) {
+        try {
+            final Document document = esServiceClient.getDocumentByNativeId(esHelper.getResourcesIndex(), getStateId(dataStage, type));
+            if (document == null || document.getSource() == null || document.getSource().get(HIGH_WATER_MARK) == null || document.getSource().get(LAST_RECONCILIATION) == null) {
+                return null;
+            }
+            return new IndexingState(Instant.parse((String) document.getSource().get(HIGH_WATER_MARK)), Instant.parse((String) document.getSource().get(LAST_RECONCILIATION)));
+        } catch (WebClientResponseException.NotFound e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if there is no state yet or the last reconciliation is older than the configured interval
+     */
+    public boolean isReconciliationDue(IndexingState state, Instant now) {
+        return state == null || state.lastReconciliation.plus(reconciliationInterval).isBefore(now);
+    }
+
+    /**
+     * @return the query parameters to restrict a query to the instances changed since the last run. The high water mark
+     * is moved back by the configured overlap to compensate for clock differences between KG core and this service.
+     */
+    public Map<String, String> getChangedSinceParameters(IndexingState state) {
+        return Map.of(CHANGED_SINCE_PARAMETER, getRegexForTimestampsSince(state.highWaterMark.minus(highWaterMarkOverlap)));
+    }
+
+    /**
+     * The filters of KG core can't compare dates - but since ISO-8601 timestamps in UTC are ordered lexicographically,
+     * the ones at or after the given instant (with the precision of a second) can be matched by a regular expression:
+     * they either start with the same second or have a higher digit at the first position they differ.
+     */
+    static String getRegexForTimestampsSince(Instant instant) {
+        final String since = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(instant.truncatedTo(ChronoUnit.SECONDS).atOffset(ZoneOffset.UTC));
+        final List<String> alternatives = new ArrayList<>();
+        alternatives.add(since);
+        for (int i = 0; i < since.length(); i++) {
+            final char c = since.charAt(i);
+            if (c >= '0' && c < '9') {
+                alternatives.add(String.format("%s[%c-9]", since.substring(0, i), (char) (c + 1)));
+            }
+        }
+        return String.format("^(%s).*", String.join("|", alternatives));
+    }
+
+    public void saveState(DataStage dataStage, Class<?> type, Instant highWaterMark, Instant lastReconciliation) {
+        Map<String, Object> state = new HashMap<>();
+        state.put(HIGH_WATER_MARK, highWaterMark.toString());
+        state.put(LAST_RECONCILIATION, lastReconciliation.toString());
+        elasticSearchController.addResource(getStateId(dataStage, type), state);
+    }
+}
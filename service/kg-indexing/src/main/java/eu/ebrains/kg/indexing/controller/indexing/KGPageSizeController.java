@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import eu.ebrains.kg.common.controller.translation.AdaptivePageSize;
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.elasticsearch.Document;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import eu.ebrains.kg.common.utils.ESHelper;
+import eu.ebrains.kg.indexing.controller.elasticsearch.ElasticSearchController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.Map;
+
+/**
+ * Provides the page sizes with which the queries are executed against the KG. They are adapted at runtime (see
+ * {@link AdaptivePageSize}) and stored per query and stage in the resources index, so the next indexing run starts
+ * with the size the last one ended up with - the bulk size of the translator model is only the initial value.
+ */
+@Component
+public class KGPageSizeController {
+
+    private static final String SIZE = "size";
+
+    private final ESServiceClient esServiceClient;
+    private final ESHelper esHelper;
+    private final ElasticSearchController elasticSearchController;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyInMs;
+    private final long maxResponseSizeInBytes;
+
+    public KGPageSizeController(ESServiceClient esServiceClient, ESHelper esHelper, ElasticSearchController elasticSearchController, @Value("${KG_PAGE_SIZE_MIN:1}") int minSize, @Value("${KG_PAGE_SIZE_MAX:5000}") int maxSize, @Value("${KG_PAGE_TARGET_LATENCY_IN_SECONDS:20}") long targetLatencyInSeconds, @Value("${KG_PAGE_MAX_RESPONSE_SIZE_IN_MB:50}") long maxResponseSizeInMb) {
+        this.esServiceClient = esServiceClient;
+        this.esHelper = esHelper;
+        this.elasticSearchController = elasticSearchController;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyInMs = targetLatencyInSeconds * 1000;
+        this.maxResponseSizeInBytes = maxResponseSizeInMb * 1024 * 1024;
+    }
+
+    private String getPageSizeId(DataStage dataStage, String queryId) {
+        return String.format("kgPageSize_%s_%s", dataStage, queryId);
+    }
+
+    /**
+     * @param initialSize the size to start with if there is no stored one
+     */
+    public AdaptivePageSize getPageSize(DataStage dataStage, String queryId, int initialSize) {
+        int size = initialSize;
+        try {
+            final Document document = esServiceClient.getDocumentByNativeId(esHelper.getResourcesIndex(), getPageSizeId(dataStage, queryId));
+            if (document != null && document.getSource() != null && document.getSource().get(SIZE) instanceof Number storedSize) {
+                size = storedSize.intValue();
+            }
+        } catch (WebClientResponseException.NotFound e) {
+            //There is no stored size yet - we start with the initial one
+        }
+        return new AdaptivePageSize(size, minSize, maxSize, targetLatencyInMs, maxResponseSizeInBytes);
+    }
+
+    public void save(DataStage dataStage, String queryId, AdaptivePageSize pageSize) {
+        elasticSearchController.addResource(getPageSizeId(dataStage, queryId), Map.of(SIZE, pageSize.get()));
+    }
+}
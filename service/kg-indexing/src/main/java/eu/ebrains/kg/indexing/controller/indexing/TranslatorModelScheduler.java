@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
+import eu.ebrains.kg.common.model.ErrorReportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Runs the indexing of several target types at the same time since they are independent of each other (apart of
+ * the identifiers index which needs to be recreated before any of them starts - this is up to the caller).
+ * The results are returned in the order of the given translator models, no matter in which order they've finished.
+ * <p>
+ * References are resolved against the identifiers registered so far. With several target types at the same time, a
+ * reference to an instance which is indexed for the first time by another target type of the same job is therefore
+ * only kept if that instance has already been written - otherwise, it is cleared and resolved by the next run (the
+ * document changes and is rewritten then). This is accepted in favor of the throughput - a parallelism of 1 restores
+ * the sequential behavior in which all target types indexed before are resolvable.
+ */
+@Component
+public class TranslatorModelScheduler {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int parallelism;
+
+    public TranslatorModelScheduler(@Value("${INDEXING_PARALLEL_TARGET_TYPES:4}") int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public List<ErrorReportResult.ErrorReportResultByTargetType> run(List<TranslatorModel<?, ?>> translatorModels, Function<TranslatorModel<?, ?>, ErrorReportResult.ErrorReportResultByTargetType> task) {
+        if (parallelism == 1) {
+            return translatorModels.stream().map(task).filter(Objects::nonNull).toList();
+        }
+        final Semaphore permits = new Semaphore(parallelism);
+        final List<Future<ErrorReportResult.ErrorReportResultByTargetType>> futures = new ArrayList<>(translatorModels.size());
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            final CompletionService<ErrorReportResult.ErrorReportResultByTargetType> completionService = new ExecutorCompletionService<>(executorService);
+            for (TranslatorModel<?, ?> translatorModel : translatorModels) {
+                futures.add(completionService.submit(() -> {
+                    permits.acquire();
+                    try {
+                        logger.info("Start indexing {}", translatorModel.getTargetClass().getSimpleName());
+                        return task.apply(translatorModel);
+                    } finally {
+                        logger.info("Finished indexing {}", translatorModel.getTargetClass().getSimpleName());
+                        permits.release();
+                    }
+                }));
+            }
+            return collect(completionService, futures);
+        }
+    }
+
+    private List<ErrorReportResult.ErrorReportResultByTargetType> collect(CompletionService<ErrorReportResult.ErrorReportResultByTargetType> completionService, List<Future<ErrorReportResult.ErrorReportResultByTargetType>> futures) {
+        try {
+            //We wait in the order of completion to be able to stop the others as soon as one of the target types fails
+            for (int i = 0; i < futures.size(); i++) {
+                completionService.take().get();
+            }
+            final List<ErrorReportResult.ErrorReportResultByTargetType> result = new ArrayList<>();
+            for (Future<ErrorReportResult.ErrorReportResultByTargetType> future : futures) {
+                final ErrorReportResult.ErrorReportResultByTargetType errorsByTargetType = future.get();
+                if (errorsByTargetType != null) {
+                    result.add(errorsByTargetType);
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while indexing", e);
+        } catch (ExecutionException e) {
+            //One of the target types failed - we don't continue with the others (as it was the case for the sequential indexing)
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
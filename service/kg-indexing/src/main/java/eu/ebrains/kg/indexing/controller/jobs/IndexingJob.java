@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.jobs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import eu.ebrains.kg.common.controller.translation.models.Stats;
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.ErrorReportResult;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An indexing job submitted to the {@link IndexingJobController}. The running indexing reports its progress to the job
+ * and checks it for cancellation (between the pages it writes).
+ */
+@Getter
+public class IndexingJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String name;
+    private final DataStage dataStage;
+    private final Instant submittedAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile boolean cancellationRequested;
+    /**
+     * The progress of the indexing by target type
+     */
+    private final Map<String, String> progress = new ConcurrentSkipListMap<>();
+    private volatile ErrorReportResult result;
+    private volatile String error;
+
+    public IndexingJob(String name, DataStage dataStage) {
+        this.name = name;
+        this.dataStage = dataStage;
+    }
+
+    public void reportProgress(String targetType, Stats stats) {
+        progress.put(targetType, stats.getInfo());
+    }
+
+    /**
+     * @throws CancellationException if the cancellation of the job has been requested
+     */
+    public void checkCancellation() {
+        if (cancellationRequested) {
+            throw new CancellationException(String.format("The indexing job %s has been cancelled", id));
+        }
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    boolean isSameAs(String name, DataStage dataStage) {
+        return this.name.equals(name) && this.dataStage == dataStage;
+    }
+
+    void requestCancellation() {
+        this.cancellationRequested = true;
+    }
+
+    void started() {
+        this.startedAt = Instant.now();
+        this.status = Status.RUNNING;
+    }
+
+    void succeeded(ErrorReportResult result) {
+        this.result = result;
+        finished(Status.SUCCEEDED);
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finished(Status.FAILED);
+    }
+
+    void cancelled() {
+        finished(Status.CANCELLED);
+    }
+
+    private void finished(Status status) {
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+}
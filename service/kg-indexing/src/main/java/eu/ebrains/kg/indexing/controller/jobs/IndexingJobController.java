@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.jobs;
+
+import eu.ebrains.kg.common.model.DataStage;
+import eu.ebrains.kg.common.model.ErrorReportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Runs the indexing jobs in the background. The jobs of a stage share indexes (e.g. the identifiers index and the
+ * temporary indexes of a full replacement) which is why they are queued and run one after the other - the jobs of
+ * different stages run concurrently. Submitting a job which is already queued or running returns the existing one.
+ */
+@Component
+public class IndexingJobController {
+
+    private final static Logger logger = LoggerFactory.getLogger(IndexingJobController.class);
+
+    private final ExecutorService executorService;
+    private final int historySize;
+    private final Map<String, IndexingJob> jobs = new LinkedHashMap<>();
+    private final Map<DataStage, Deque<QueuedJob>> queues = new EnumMap<>(DataStage.class);
+
+    private static class QueuedJob {
+        private final IndexingJob job;
+        private final Function<IndexingJob, ErrorReportResult> task;
+
+        private QueuedJob(IndexingJob job, Function<IndexingJob, ErrorReportResult> task) {
+            this.job = job;
+            this.task = task;
+        }
+    }
+
+    public IndexingJobController(@Value("${INDEXING_JOBS_MAX_CONCURRENT:2}") int maxConcurrentJobs, @Value("${INDEXING_JOBS_HISTORY_SIZE:100}") int historySize) {
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, maxConcurrentJobs), Thread.ofVirtual().name("indexing-job-", 0).factory());
+        this.historySize = historySize;
+    }
+
+    /**
+     * @param task the indexing - it returns the errors (or null if there are none)
+     */
+    public synchronized IndexingJob submit(String name, DataStage dataStage, Function<IndexingJob, ErrorReportResult> task) {
+        final Deque<QueuedJob> queue = queues.computeIfAbsent(dataStage, s -> new ArrayDeque<>());
+        for (QueuedJob queuedJob : queue) {
+            if (queuedJob.job.isSameAs(name, dataStage) && !queuedJob.job.isCancellationRequested()) {
+                logger.info("Indexing job {} of {} is already queued or running ({})", name, dataStage, queuedJob.job.getId());
+                return queuedJob.job;
+            }
+        }
+        final IndexingJob job = new IndexingJob(name, dataStage);
+        jobs.put(job.getId(), job);
+        queue.add(new QueuedJob(job, task));
+        logger.info("Submitted indexing job {} of {} ({})", name, dataStage, job.getId());
+        if (queue.size() == 1) {
+            start(queue.peek());
+        }
+        removeFinishedJobs();
+        return job;
+    }
+
+    public synchronized IndexingJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public synchronized List<IndexingJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Cancels the job - a queued job is removed from the queue right away, a running one stops at the next page it
+     * writes (its temporary indexes are not switched and its indexing state is not saved).
+     *
+     * @return the job or null if there is no job with the given id
+     */
+    public synchronized IndexingJob cancel(String id) {
+        final IndexingJob job = jobs.get(id);
+        if (job == null || job.isFinished()) {
+            return job;
+        }
+        final Deque<QueuedJob> queue = queues.get(job.getDataStage());
+        final QueuedJob head = queue.peek();
+        if (head != null && head.job != job) {
+            queue.removeIf(queuedJob -> queuedJob.job == job);
+            job.cancelled();
+        } else {
+            job.requestCancellation();
+        }
+        logger.info("Requested the cancellation of indexing job {} of {} ({})", job.getName(), job.getDataStage(), id);
+        return job;
+    }
+
+    private void start(QueuedJob queuedJob) {
+        executorService.execute(() -> run(queuedJob));
+    }
+
+    private void run(QueuedJob queuedJob) {
+        final IndexingJob job = queuedJob.job;
+        try {
+            if (job.isCancellationRequested()) {
+                job.cancelled();
+                return;
+            }
+            job.started();
+            logger.info("Started indexing job {} of {} ({})", job.getName(), job.getDataStage(), job.getId());
+            job.succeeded(queuedJob.task.apply(job));
+            logger.info("Finished indexing job {} of {} ({})", job.getName(), job.getDataStage(), job.getId());
+        } catch (Throwable e) {
+            //Errors (e.g. an OutOfMemoryError) end the job as well - otherwise it would stay running forever
+            if (job.isCancellationRequested() && !(e instanceof Error)) {
+                logger.info("Cancelled indexing job {} of {} ({})", job.getName(), job.getDataStage(), job.getId());
+                job.cancelled();
+            } else {
+                logger.error(String.format("Indexing job %s of %s (%s) failed", job.getName(), job.getDataStage(), job.getId()), e);
+                job.failed(e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+            }
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            startNext(job);
+        }
+    }
+
+    private synchronized void startNext(IndexingJob finishedJob) {
+        final Deque<QueuedJob> queue = queues.get(finishedJob.getDataStage());
+        queue.removeIf(queuedJob -> queuedJob.job == finishedJob);
+        final QueuedJob next = queue.peek();
+        if (next != null) {
+            start(next);
+        }
+    }
+
+    private void removeFinishedJobs() {
+        final Iterator<IndexingJob> iterator = jobs.values().iterator();
+        while (jobs.size() > historySize && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -41,6 +41,10 @@ public class MappingController {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final MetaModelUtils utils;
     public final static String TEXT_ANALYZER = "custom_text_analyzer";
+    /**
+     * The indexing run which has written the document last (see ElasticSearchController#removeDeprecatedDocuments)
+     */
+    public final static String GENERATION = "generation";
     private final static String KEYWORD = "keyword";
     private final static String PROPERTIES = "properties";
 
@@ -48,6 +52,10 @@ public class MappingController {
         this.utils = utils;
     }
 
+    public Map<String, Object> getGenerationMapping() {
+        return Map.of("type", "long");
+    }
+
     public Map<String, Object> generateIdentifierMapping() {
         Map<String, Object> mapping = new LinkedHashMap<>();
         Map<String, Object> properties = new LinkedHashMap<>();
@@ -56,6 +64,7 @@ public class MappingController {
         properties.put("identifier", Map.of("type", KEYWORD));
         properties.put("type", Map.of(PROPERTIES, Map.of("value", Map.of("type", KEYWORD))));
         properties.put("specimenIds", Map.of("type", KEYWORD));
+        properties.put(GENERATION, getGenerationMapping());
         timestamp.put("type", "date");
         properties.put("@timestamp", timestamp);
         mapping.put(PROPERTIES, properties);
@@ -73,6 +82,7 @@ public class MappingController {
         timestamp.put("type", "date");
         properties.put("id", Map.of("type", KEYWORD));
         properties.put("type", Map.of("type", KEYWORD));
+        properties.put(GENERATION, getGenerationMapping());
         properties.put("@timestamp", timestamp);
         properties.putAll(handleType(clazz, null, useCustomAnalyzer));
         logger.info(String.format("Mapping created: %s", mapping));
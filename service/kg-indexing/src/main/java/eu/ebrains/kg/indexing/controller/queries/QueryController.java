@@ -23,9 +23,13 @@
 
 package eu.ebrains.kg.indexing.controller.queries;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.ebrains.kg.common.controller.translation.TranslatorRegistry;
 import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.services.KGServiceClient;
+import eu.ebrains.kg.indexing.controller.indexing.IndexingStateController;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
@@ -38,6 +42,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 
 @Component
 public class QueryController {
@@ -46,6 +51,7 @@ public class QueryController {
     private final KGServiceClient kgv3ServiceClient;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final TranslatorRegistry translatorRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     public QueryController(KGServiceClient kgv3ServiceClient, TranslatorRegistry translatorRegistry) {
         this.kgv3ServiceClient = kgv3ServiceClient;
@@ -64,7 +70,9 @@ public class QueryController {
                     logger.info(String.format("Uploading query %s from file %s for type %s", queryId, filename, semanticType));
                     Map<String, Object> properties = new HashMap<>();
                     properties.put("type", semanticType);
-                    kgv3ServiceClient.uploadQuery(queryId, StringSubstitutor.replace(payload, properties));
+                    final String query = StringSubstitutor.replace(payload, properties);
+                    kgv3ServiceClient.uploadQuery(queryId, query);
+                    kgv3ServiceClient.uploadQuery(getChangedSinceQueryId(queryId), addChangedSinceFilter(query));
                 }
             }
             catch (IOException e){
@@ -74,6 +82,29 @@ public class QueryController {
         logger.info("Queries successfully uploaded!");
     }
 
+    /**
+     * @return the id of the variant of the query which only returns the instances released since the time passed as
+     * {@link IndexingStateController#CHANGED_SINCE_PARAMETER} (see {@link IndexingStateController#getChangedSinceParameters})
+     */
+    public static String getChangedSinceQueryId(String queryId) {
+        return UUID.nameUUIDFromBytes(String.format("%s/%s", queryId, IndexingStateController.CHANGED_SINCE_PARAMETER).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * KG core only binds a parameter to a filter of the query - the instances are restricted to the changed ones by a
+     * required property filtering their last release. The filter can't be added to the original query since it would
+     * exclude the unreleased instances from the IN_PROGRESS stage.
+     */
+    private String addChangedSinceFilter(String payload) throws IOException {
+        final ObjectNode query = (ObjectNode) objectMapper.readTree(payload);
+        final ObjectNode changedSince = ((ArrayNode) query.get("structure")).addObject();
+        changedSince.put("propertyName", "query:changedSince");
+        changedSince.put("path", "https://core.kg.ebrains.eu/vocab/meta/lastReleasedAt");
+        changedSince.put("required", true);
+        changedSince.putObject("filter").put("op", "REGEX").put("parameter", IndexingStateController.CHANGED_SINCE_PARAMETER);
+        return objectMapper.writeValueAsString(query);
+    }
+
     private String loadQuery(String fileName) throws IOException {
         return IOUtils.toString(Objects.requireNonNull(this.getClass().getResourceAsStream(String.format("/queries/%s.json", fileName))), StandardCharsets.UTF_8);
     }
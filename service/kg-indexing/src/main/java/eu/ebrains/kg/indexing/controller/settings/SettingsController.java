@@ -25,6 +25,7 @@ package eu.ebrains.kg.indexing.controller.settings;
 
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +34,27 @@ import static eu.ebrains.kg.indexing.controller.mapping.MappingController.TEXT_A
 @Component
 public class SettingsController {
 
+    /**
+     * Settings for indexes which are populated from scratch: no refreshes and no replicas until the population is done.
+     */
+    public Map<String, Object> generateBulkLoadSettings() {
+        return Map.of(
+                "refresh_interval", "-1",
+                "number_of_replicas", 0
+        );
+    }
+
+    /**
+     * Resets the settings applied by {@link #generateBulkLoadSettings()} to the defaults of the cluster.
+     */
+    public Map<String, Object> generateLiveSettings() {
+        //Map.of doesn't support null values
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("refresh_interval", null);
+        settings.put("number_of_replicas", null);
+        return settings;
+    }
+
     public Map<String, Object> generateSearchIndexSettings() {
         return Map.of(
                 "analysis", Map.of(
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveBulkSizeTest {
+
+    @Test
+    void initialSizeWithinBounds() {
+        assertEquals(100, new AdaptiveBulkSize(10, 100, 1000, 2000).get());
+        assertEquals(1000, new AdaptiveBulkSize(5000, 100, 1000, 2000).get());
+        assertEquals(500, new AdaptiveBulkSize(500, 100, 1000, 2000).get());
+    }
+
+    @Test
+    void growAdditivelyUpToMaxBytes() {
+        AdaptiveBulkSize bulkSize = new AdaptiveBulkSize(500, 100, 1000, 2000);
+        bulkSize.onSuccess(2000);
+        assertEquals(600, bulkSize.get());
+        bulkSize.onSuccess(10);
+        assertEquals(700, bulkSize.get());
+        for (int i = 0; i < 10; i++) {
+            bulkSize.onSuccess(10);
+        }
+        assertEquals(1000, bulkSize.get());
+    }
+
+    @Test
+    void halveIfSlowOrRejectedDownToMinBytes() {
+        AdaptiveBulkSize bulkSize = new AdaptiveBulkSize(1000, 100, 1000, 2000);
+        bulkSize.onSuccess(2001);
+        assertEquals(500, bulkSize.get());
+        bulkSize.onRejection();
+        assertEquals(250, bulkSize.get());
+        bulkSize.onRejection();
+        bulkSize.onRejection();
+        assertEquals(100, bulkSize.get());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkOperationsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @return the body as it is sent to Elasticsearch
+     */
+    static String render(BodyInserter<?, ? super ClientHttpRequest> body) {
+        final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, "/_bulk");
+        body.insert(request, null).block();
+        return request.getBodyAsString().block();
+    }
+
+    @Test
+    void encodeOperations() {
+        BulkOperations operations = new BulkOperations(objectMapper)
+                .index("1", Map.of("name", "Z\u00fcrich"))
+                .index("2", "{\"a\":1}".getBytes(StandardCharsets.UTF_8))
+                .update("3", "{\"doc\":{\"a\":2}}".getBytes(StandardCharsets.UTF_8))
+                .delete("with\"quote");
+        final String expected = """
+                {"index":{"_id":"1"}}
+                {"name":"Z\u00fcrich"}
+                {"index":{"_id":"2"}}
+                {"a":1}
+                {"update":{"_id":"3"}}
+                {"doc":{"a":2}}
+                {"delete":{"_id":"with\\"quote"}}
+                """;
+
+        final BulkOperations.Chunk chunk = operations.nextChunk(Long.MAX_VALUE);
+        try {
+            assertFalse(operations.hasNextChunk());
+            assertEquals(4, chunk.size());
+            assertEquals(List.of("1", "2", "3", "with\"quote"), List.of(chunk.getId(0), chunk.getId(1), chunk.getId(2), chunk.getId(3)));
+            assertEquals(expected, render(chunk.body()));
+            //The size is counted in (UTF-8) bytes, not in characters
+            assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, chunk.getBytes());
+            //The body can be sent again (e.g. for a retry)
+            assertEquals(expected, render(chunk.body()));
+        } finally {
+            chunk.release();
+        }
+    }
+
+    @Test
+    void splitIntoChunksAtMaxBytes() {
+        BulkOperations operations = new BulkOperations(objectMapper);
+        for (int i = 0; i < 10; i++) {
+            operations.delete(String.format("id-%d", i));
+        }
+        final long bytesPerOperation = "{\"delete\":{\"_id\":\"id-0\"}}\n".getBytes(StandardCharsets.UTF_8).length;
+
+        final List<Integer> chunkSizes = new ArrayList<>();
+        while (operations.hasNextChunk()) {
+            final BulkOperations.Chunk chunk = operations.nextChunk(3 * bytesPerOperation);
+            chunkSizes.add(chunk.size());
+            assertTrue(chunk.getBytes() <= 3 * bytesPerOperation);
+            chunk.release();
+        }
+        assertEquals(List.of(3, 3, 3, 1), chunkSizes);
+    }
+
+    @Test
+    void operationLargerThanMaxBytesMakesUpAChunkOnItsOwn() {
+        BulkOperations operations = new BulkOperations(objectMapper).delete("1").delete("2");
+
+        final BulkOperations.Chunk first = operations.nextChunk(1);
+        final BulkOperations.Chunk second = operations.nextChunk(1);
+        try {
+            assertEquals(1, first.size());
+            assertEquals("1", first.getId(0));
+            assertEquals(1, second.size());
+            assertEquals("2", second.getId(0));
+            assertFalse(operations.hasNextChunk());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+}
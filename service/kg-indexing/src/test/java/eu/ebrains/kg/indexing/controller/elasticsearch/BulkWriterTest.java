@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.elasticsearch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.common.model.ErrorReport;
+import eu.ebrains.kg.common.services.ESServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkWriterTest {
+
+    private static final String INDEX = "index";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ESServiceClient esServiceClient = mock(ESServiceClient.class);
+    private final List<String> sentBodies = new ArrayList<>();
+    private final Deque<Object> responses = new ArrayDeque<>();
+    private final BulkWriter bulkWriter = new BulkWriter(esServiceClient, new SimpleMeterRegistry(), 1, 1000000, 1000, 1000000, 2000);
+
+    BulkWriterTest() {
+        when(esServiceClient.bulk(eq(INDEX), any())).thenAnswer(invocation -> {
+            sentBodies.add(BulkOperationsTest.render(invocation.getArgument(1)));
+            final Object response = responses.poll();
+            if (response instanceof RuntimeException e) {
+                throw e;
+            }
+            return response;
+        });
+    }
+
+    private static Map<String, Object> item(String id, int status, String errorType) {
+        final Map<String, Object> result = new HashMap<>();
+        result.put("_id", id);
+        result.put("status", status);
+        if (errorType != null) {
+            result.put("error", Map.of("type", errorType, "reason", "some reason"));
+        }
+        return Map.of("delete", result);
+    }
+
+    private BulkOperations deletes(String... ids) {
+        BulkOperations operations = new BulkOperations(objectMapper);
+        Arrays.stream(ids).forEach(operations::delete);
+        return operations;
+    }
+
+    private static String deleteBody(String... ids) {
+        StringBuilder body = new StringBuilder();
+        Arrays.stream(ids).forEach(id -> body.append(String.format("{\"delete\":{\"_id\":\"%s\"}}\n", id)));
+        return body.toString();
+    }
+
+    @Test
+    void retryOnlyRejectedItemsAndReportTheOthers() {
+        responses.add(Map.of("errors", true, "items", List.of(
+                item("a", 429, "es_rejected_execution_exception"),
+                item("b", 400, "mapper_parsing_exception"),
+                item("c", 503, "unavailable_shards_exception"),
+                item("d", 200, null)
+        )));
+        responses.add(Map.of("errors", false, "items", List.of(item("a", 200, null), item("c", 200, null))));
+
+        final ErrorReport errorReport = bulkWriter.write(INDEX, deletes("a", "b", "c", "d"));
+
+        assertEquals(Set.of("b"), errorReport.keySet());
+        assertTrue(errorReport.get("b").getFirst().contains("mapper_parsing_exception"));
+        assertEquals(List.of(deleteBody("a", "b", "c", "d"), deleteBody("a", "c")), sentBodies);
+    }
+
+    @Test
+    void retryRejectedRequest() {
+        responses.add(WebClientResponseException.create(429, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8));
+        responses.add(Map.of("errors", false, "items", List.of(item("a", 200, null), item("b", 200, null))));
+
+        final ErrorReport errorReport = bulkWriter.write(INDEX, deletes("a", "b"));
+
+        assertTrue(errorReport.isEmpty());
+        assertEquals(List.of(deleteBody("a", "b"), deleteBody("a", "b")), sentBodies);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.indexing.controller.indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingStateControllerTest {
+
+    private final Pattern since = Pattern.compile(IndexingStateController.getRegexForTimestampsSince(Instant.parse("2023-09-18T12:34:56.789Z")));
+
+    private boolean matches(String timestamp) {
+        return since.matcher(timestamp).matches();
+    }
+
+    @Test
+    void matchTimestampsSince() {
+        assertTrue(matches("2023-09-18T12:34:56Z"));
+        assertTrue(matches("2023-09-18T12:34:56.001Z"));
+        assertTrue(matches("2023-09-18T12:34:57Z"));
+        assertTrue(matches("2023-09-18T12:40:00Z"));
+        assertTrue(matches("2023-09-18T20:00:00.123Z"));
+        assertTrue(matches("2023-09-19T00:00:00Z"));
+        assertTrue(matches("2023-10-01T00:00:00Z"));
+        assertTrue(matches("2023-12-31T23:59:59Z"));
+        assertTrue(matches("2024-01-01T00:00:00Z"));
+        assertTrue(matches("2100-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void dontMatchTimestampsBefore() {
+        assertFalse(matches("2023-09-18T12:34:55.999Z"));
+        assertFalse(matches("2023-09-18T12:30:59Z"));
+        assertFalse(matches("2023-09-18T09:59:59Z"));
+        assertFalse(matches("2023-09-17T23:59:59Z"));
+        assertFalse(matches("2023-08-31T23:59:59Z"));
+        assertFalse(matches("2022-12-31T23:59:59Z"));
+        assertFalse(matches("1999-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void truncateToSeconds() {
+        assertEquals("^(2023-09-18T12:00:00|[3-9]|2[1-9]|20[3-9]|202[4-9]|2023-[1-9]|2023-09-[2-9]|2023-09-1[9-9]|2023-09-18T[2-9]|2023-09-18T1[3-9]|2023-09-18T12:[1-9]|2023-09-18T12:0[1-9]|2023-09-18T12:00:[1-9]|2023-09-18T12:00:0[1-9]).*", IndexingStateController.getRegexForTimestampsSince(Instant.parse("2023-09-18T12:00:00.5Z")));
+    }
+}
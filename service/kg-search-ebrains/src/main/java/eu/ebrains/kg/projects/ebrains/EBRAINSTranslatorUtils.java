@@ -27,7 +27,7 @@ import eu.ebrains.kg.common.controller.translation.models.Stats;
 import eu.ebrains.kg.common.model.source.RelatedPublication;
 import eu.ebrains.kg.common.model.source.ResultsOfKG;
 import eu.ebrains.kg.common.model.target.TargetInternalReference;
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.common.utils.IdUtils;
 import eu.ebrains.kg.projects.ebrains.source.commons.*;
 import eu.ebrains.kg.projects.ebrains.translators.commons.EBRAINSTranslator;
@@ -38,8 +38,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -47,7 +45,6 @@ import java.util.stream.Stream;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class EBRAINSTranslatorUtils {
     private final static Logger logger = LoggerFactory.getLogger(EBRAINSTranslatorUtils.class);
-    private final static Map<Class<?>, Set<Field>> nonStaticTransientFields = new HashMap<>();
 
 
     public static String createEmbargoMessage(String type, FileRepository fileRepository, String uuid) {
@@ -186,11 +183,29 @@ public class EBRAINSTranslatorUtils {
         return new Stats(pageSize, info);
     }
 
-    public static String getFormattedDigitalIdentifier(DOICitationFormatter doiCitationFormatter, String digitalIdentifier, RelatedPublication.PublicationType resolvedType) {
+    private static String getAbsoluteDOI(String digitalIdentifier) {
+        return digitalIdentifier.contains("http") && digitalIdentifier.contains("doi.org") ? digitalIdentifier : String.format("https://doi.org/%s", digitalIdentifier);
+    }
+
+    /**
+     * @return the (absolute) DOIs of the given publications - they are formatted by {@link #getFormattedDigitalIdentifier}
+     */
+    public static Set<String> getDOIs(List<RelatedPublication> publications) {
+        if (CollectionUtils.isEmpty(publications)) {
+            return Collections.emptySet();
+        }
+        return publications.stream().filter(p -> p.resolvedType() == RelatedPublication.PublicationType.DOI && StringUtils.isNotBlank(p.getIdentifier())).map(p -> getAbsoluteDOI(p.getIdentifier())).collect(Collectors.toSet());
+    }
+
+    public static Set<String> getDOIs(String doi) {
+        return StringUtils.isNotBlank(doi) ? Collections.singleton(getAbsoluteDOI(doi)) : Collections.emptySet();
+    }
+
+    public static String getFormattedDigitalIdentifier(DOICitationResolver doiCitationResolver, String digitalIdentifier, RelatedPublication.PublicationType resolvedType) {
         if (StringUtils.isNotBlank(digitalIdentifier)) {
             if (resolvedType == RelatedPublication.PublicationType.DOI) {
-                String absoluteDOI = digitalIdentifier.contains("http") && digitalIdentifier.contains("doi.org") ? digitalIdentifier : String.format("https://doi.org/%s", digitalIdentifier);
-                final String doiCitation = doiCitationFormatter.getDOICitation(absoluteDOI, "apa", "text/x-bibliography");
+                String absoluteDOI = getAbsoluteDOI(digitalIdentifier);
+                final String doiCitation = doiCitationResolver.getCitation(absoluteDOI);
                 final String[] split = absoluteDOI.split("doi\\.org/");
                 String simpleDOI;
                 if (split.length == 2) {
@@ -214,57 +229,6 @@ public class EBRAINSTranslatorUtils {
     }
 
 
-    private synchronized static Set<Field> getNonStaticNonTransientFields(Class<?> clazz) {
-        Set<Field> fields = nonStaticTransientFields.get(clazz);
-        if (fields == null) {
-            fields = new HashSet<>();
-            collectAllNonStaticNonTransientFields(clazz, fields);
-            nonStaticTransientFields.put(clazz, fields);
-        }
-        return fields;
-    }
-
-
-    private static void collectAllNonStaticNonTransientFields(Class<?> clazz, Set<Field> collector) {
-        if (clazz.getCanonicalName().startsWith("eu.ebrains.kg")) {
-            final Field[] declaredFields = clazz.getDeclaredFields();
-            for (Field declaredField : declaredFields) {
-                if (!Modifier.isTransient(declaredField.getModifiers()) && !Modifier.isStatic(declaredField.getModifiers())) {
-                    collector.add(declaredField);
-                }
-            }
-            collectAllNonStaticNonTransientFields(clazz.getSuperclass(), collector);
-        }
-    }
-
-    public static void collectAllTargetInternalReferences(Object obj, List<TargetInternalReference> collector) {
-        if (obj == null) {
-            return;
-        }
-        if (obj instanceof TargetInternalReference) {
-            collector.add((TargetInternalReference) obj);
-            return;
-        }
-        getNonStaticNonTransientFields(obj.getClass()).forEach(f -> {
-            try {
-                f.setAccessible(true);
-                Object value = f.get(obj);
-                if (value != null) {
-                    if (value instanceof Collection) {
-                        ((Collection<?>) value).forEach(c -> collectAllTargetInternalReferences(c, collector));
-                    } else if (value instanceof Map) {
-                        ((Map<?, ?>) value).forEach((k, v) -> collectAllTargetInternalReferences(v, collector));
-                    } else {
-                        collectAllTargetInternalReferences(value, collector);
-                    }
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
-        });
-
-    }
-
     public static void addResearchProducts(Map<String, FullNameRefForResearchProduct> inputOrOutputData, List<FullNameRefForResearchProductVersion> list) {
         if (!CollectionUtils.isEmpty(list)) {
             list.forEach(l -> {
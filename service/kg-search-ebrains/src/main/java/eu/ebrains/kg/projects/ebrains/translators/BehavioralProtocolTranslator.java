@@ -38,6 +38,7 @@ import eu.ebrains.kg.projects.ebrains.translators.commons.EBRAINSTranslator;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class BehavioralProtocolTranslator extends EBRAINSTranslator<BehavioralProtocolV3, BehavioralProtocol, BehavioralProtocolTranslator.Result> {
@@ -71,6 +72,11 @@ public class BehavioralProtocolTranslator extends EBRAINSTranslator<BehavioralPr
     public static class Result extends ResultsOfKG<BehavioralProtocolV3> {
     }
 
+    @Override
+    public Set<String> getDOIs(BehavioralProtocolV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getDescribedInDOI());
+    }
+
     public BehavioralProtocol translate(BehavioralProtocolV3 behavioralProtocolV3, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
        BehavioralProtocol b = new BehavioralProtocol();
 
@@ -84,7 +90,7 @@ public class BehavioralProtocolTranslator extends EBRAINSTranslator<BehavioralPr
        b.setTitle(value(behavioralProtocolV3.getName()));
        b.setDescription(value(behavioralProtocolV3.getDescription()));
        if(behavioralProtocolV3.getDescribedInDOI()!=null){
-           b.setDescribedIn(value(EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), behavioralProtocolV3.getDescribedInDOI(), RelatedPublication.PublicationType.DOI)));
+           b.setDescribedIn(value(EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), behavioralProtocolV3.getDescribedInDOI(), RelatedPublication.PublicationType.DOI)));
        }
        else if(behavioralProtocolV3.getDescribedInFile()!=null && behavioralProtocolV3.getDescribedInFile().getName()!=null && behavioralProtocolV3.getDescribedInFile().getIri()!=null){
            b.setDescribedInLink(new TargetExternalReference(behavioralProtocolV3.getDescribedInFile().getIri(), behavioralProtocolV3.getDescribedInFile().getName()));
@@ -42,6 +42,7 @@ import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -209,7 +210,8 @@ public class BrainAtlasTranslator extends EBRAINSTranslator<BrainAtlasV3, BrainA
             return buildHierarchyTree(brainAtlasV3, null, versionGroup.getVersions().iterator().next()); //We directly return the version since it's not actually a group
         } else {
             BasicHierarchyElement<BrainAtlas.BrainAtlasVersion> e = new BasicHierarchyElement<>();
-            e.setKey(UUID.randomUUID().toString());
+            //The key of the group is derived from the atlas and the group name to keep the translation deterministic
+            e.setKey(UUID.nameUUIDFromBytes(String.format("%s/%s", brainAtlasV3.getId(), versionGroup.getGroupName()).getBytes(StandardCharsets.UTF_8)).toString());
             e.setTitle(versionGroup.getGroupName());
             e.setColor("#ffbe00");
             e.setChildren(versionGroup.getVersions().stream().sorted(Comparator.comparing(BrainAtlasV3.BrainAtlasVersion::getVersionIdentifier)).map(v -> buildHierarchyTree(brainAtlasV3, versionGroup, v)).collect(Collectors.toList()));
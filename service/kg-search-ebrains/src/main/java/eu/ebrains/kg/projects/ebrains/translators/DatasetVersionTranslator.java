@@ -23,7 +23,6 @@
 
 package eu.ebrains.kg.projects.ebrains.translators;
 
-import eu.ebrains.kg.common.model.DOIReference;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.source.FullNameRef;
 import eu.ebrains.kg.common.model.source.ResultsOfKG;
@@ -42,12 +41,15 @@ import eu.ebrains.kg.projects.ebrains.translators.commons.Constants;
 import eu.ebrains.kg.projects.ebrains.translators.commons.EBRAINSTranslator;
 import eu.ebrains.kg.projects.ebrains.translators.utils.MetaBadgeUtils;
 import eu.ebrains.kg.projects.ebrains.translators.utils.SchemaOrgConverter;
+import eu.ebrains.kg.projects.ebrains.translators.utils.SpecimenLookup;
 import eu.ebrains.kg.projects.ebrains.translators.utils.SpecimenResolver;
 import eu.ebrains.kg.projects.ebrains.translators.utils.SpecimenTranslator;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.CollectionUtils;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,20 +70,37 @@ public class DatasetVersionTranslator extends EBRAINSTranslator<DatasetVersionV3
 
     private final int TAGS_RESOLVED = 5;
 
-    private final String SPECIMEN_LOOKUP_MAP = "specimenLookupMap";
+    private final String SPECIMEN_LOOKUP = "specimenLookup";
+
+    /**
+     * The lookup is kept up to date with the written dataset versions - it is only reloaded from the indexes once it is
+     * outdated to also reflect removed dataset versions (and the indexing of other instances of this service).
+     */
+    private static final Duration SPECIMEN_LOOKUP_MAX_AGE = Duration.ofHours(1);
+    private final Map<DataStage, SpecimenLookup> specimenLookups = new ConcurrentHashMap<>();
+
     @Override
     public Map<String, Object> populateTranslationContext(ESServiceClient esServiceClient, ESHelper esHelper, DataStage stage) {
-        return Collections.singletonMap(SPECIMEN_LOOKUP_MAP, new SpecimenResolver(esServiceClient, esHelper).loadSpecimenLookupMap(stage));
+        final SpecimenLookup specimenLookup = specimenLookups.compute(stage, (s, existing) -> existing == null || existing.isOutdated(SPECIMEN_LOOKUP_MAX_AGE) ? new SpecimenResolver(esServiceClient, esHelper).loadSpecimenLookup(s) : existing);
+        return Collections.singletonMap(SPECIMEN_LOOKUP, specimenLookup);
     }
 
-    private Map<String, Set<DOIReference>> getSpecimenLookupMapFromContext(TranslatorUtils translatorUtils){
+    @Override
+    public void instancesWritten(List<DatasetVersion> instances, DataStage stage) {
+        final SpecimenLookup specimenLookup = specimenLookups.get(stage);
+        if (specimenLookup != null) {
+            instances.forEach(instance -> specimenLookup.update(instance.getId(), instance.getDoi() != null ? instance.getDoi().getValue() : null, instance.getSpecimenIds()));
+        }
+    }
+
+    private SpecimenLookup getSpecimenLookupFromContext(TranslatorUtils translatorUtils){
         if (translatorUtils.getTranslationContext()!=null) {
-            final Object o = translatorUtils.getTranslationContext().get(SPECIMEN_LOOKUP_MAP);
-            if(o instanceof Map) {
-                return  (Map<String, Set<DOIReference>>) o;
+            final Object o = translatorUtils.getTranslationContext().get(SPECIMEN_LOOKUP);
+            if(o instanceof SpecimenLookup specimenLookup) {
+                return specimenLookup;
             }
         }
-        return Collections.emptyMap();
+        return new SpecimenLookup();
     }
 
     public static class Result extends ResultsOfKG<DatasetVersionV3> {
@@ -173,6 +192,11 @@ public class DatasetVersionTranslator extends EBRAINSTranslator<DatasetVersionV3
         }
     }
 
+    @Override
+    public Set<String> getDOIs(DatasetVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getRelatedPublications());
+    }
+
     public DatasetVersion translate(DatasetVersionV3 datasetVersion, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         DatasetVersion d = new DatasetVersion();
         logger.debug("Translating {}", datasetVersion.getId());
@@ -309,7 +333,7 @@ public class DatasetVersionTranslator extends EBRAINSTranslator<DatasetVersionV3
         }
 
         if (!CollectionUtils.isEmpty(datasetVersion.getRelatedPublications())) {
-            d.setPublications(datasetVersion.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            d.setPublications(datasetVersion.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         if (!CollectionUtils.isEmpty(datasetVersion.getKeyword())) {
@@ -470,7 +494,7 @@ public class DatasetVersionTranslator extends EBRAINSTranslator<DatasetVersionV3
                 return null;
             }).filter(Objects::nonNull).collect(Collectors.toList()));
         }
-        final BasicHierarchyElement<DatasetVersion.DSVSpecimenOverview> specimenBySubject = new SpecimenTranslator(datasetVersion.getId(), translatorUtils.getErrors(), getSpecimenLookupMapFromContext(translatorUtils)).translateToHierarchy(datasetVersion.getStudiedSpecimen());
+        final BasicHierarchyElement<DatasetVersion.DSVSpecimenOverview> specimenBySubject = new SpecimenTranslator(datasetVersion.getId(), translatorUtils.getErrors(), getSpecimenLookupFromContext(translatorUtils)).translateToHierarchy(datasetVersion.getStudiedSpecimen());
         if (specimenBySubject != null) {
             d.setSpecimenIds(specimenBySubject.getData().getAllSpecimenIds());
             if (specimenBySubject.getData().getSpecies() != null) {
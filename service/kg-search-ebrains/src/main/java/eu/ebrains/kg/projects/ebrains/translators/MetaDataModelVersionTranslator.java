@@ -49,6 +49,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -83,6 +84,11 @@ public class MetaDataModelVersionTranslator extends EBRAINSTranslator<MetadataMo
     }
 
 
+    @Override
+    public Set<String> getDOIs(MetadataModelVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getRelatedPublications());
+    }
+
     public MetaDataModelVersion translate(MetadataModelVersionV3 metadataModelVersionV3, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         MetaDataModelVersion m = new MetaDataModelVersion();
 
@@ -198,7 +204,7 @@ public class MetaDataModelVersionTranslator extends EBRAINSTranslator<MetadataMo
         }
 
         if (!CollectionUtils.isEmpty(metadataModelVersionV3.getRelatedPublications())) {
-            m.setPublications(metadataModelVersionV3.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            m.setPublications(metadataModelVersionV3.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         if(!CollectionUtils.isEmpty(metadataModelVersionV3.getSupportChannel())){
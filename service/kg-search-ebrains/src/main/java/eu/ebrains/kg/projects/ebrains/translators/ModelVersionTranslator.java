@@ -78,6 +78,11 @@ public class ModelVersionTranslator extends EBRAINSTranslator<ModelVersionV3, Mo
     }
 
 
+    @Override
+    public Set<String> getDOIs(ModelVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getRelatedPublications());
+    }
+
     public ModelVersion translate(ModelVersionV3 modelVersion, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         ModelVersion m = new ModelVersion();
 
@@ -193,7 +198,7 @@ public class ModelVersionTranslator extends EBRAINSTranslator<ModelVersionV3, Mo
         }
 
         if (!CollectionUtils.isEmpty(modelVersion.getRelatedPublications())) {
-            m.setPublications(modelVersion.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            m.setPublications(modelVersion.getRelatedPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         if (!CollectionUtils.isEmpty(modelVersion.getKeyword())) {
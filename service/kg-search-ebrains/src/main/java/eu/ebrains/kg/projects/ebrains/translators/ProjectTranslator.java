@@ -38,6 +38,7 @@ import org.springframework.util.CollectionUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class ProjectTranslator extends EBRAINSTranslator<ProjectV3, Project, ProjectTranslator.Result> {
@@ -69,6 +70,11 @@ public class ProjectTranslator extends EBRAINSTranslator<ProjectV3, Project, Pro
         return Collections.singletonList("https://openminds.ebrains.eu/core/Project");
     }
 
+    @Override
+    public Set<String> getDOIs(ProjectV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getPublications());
+    }
+
     public Project translate(ProjectV3 project, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         Project p = new Project();
 
@@ -87,7 +93,7 @@ public class ProjectTranslator extends EBRAINSTranslator<ProjectV3, Project, Pro
         p.setTitle(value(project.getTitle()));
         if(!CollectionUtils.isEmpty(project.getPublications())) {
             p.setPublications(value(project.getPublications().stream()
-                    .map(rp -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), rp.getIdentifier(), rp.resolvedType())).filter(Objects::nonNull).collect(Collectors.toList())));
+                    .map(rp -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), rp.getIdentifier(), rp.resolvedType())).filter(Objects::nonNull).collect(Collectors.toList())));
         }
         p.setQueryBuilderText(value(TranslatorUtils.createQueryBuilderText(project.getPrimaryType(), p.getId())));
         return p;
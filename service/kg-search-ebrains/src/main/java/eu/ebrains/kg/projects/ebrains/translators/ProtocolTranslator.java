@@ -40,6 +40,7 @@ import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class ProtocolTranslator extends EBRAINSTranslator<ProtocolV3, Protocol, ProtocolTranslator.Result> {
@@ -73,6 +74,11 @@ public class ProtocolTranslator extends EBRAINSTranslator<ProtocolV3, Protocol,
     public static class Result extends ResultsOfKG<ProtocolV3> {
     }
 
+    @Override
+    public Set<String> getDOIs(ProtocolV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getDescribedInDOI());
+    }
+
     public Protocol translate(ProtocolV3 protocolV3, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
        Protocol p = new Protocol();
 
@@ -89,7 +95,7 @@ public class ProtocolTranslator extends EBRAINSTranslator<ProtocolV3, Protocol,
        p.setDatasets(refVersion(datasets, true));
        p.setDescription(value(protocolV3.getDescription()));
        if(protocolV3.getDescribedInDOI()!=null){
-           p.setDescribedIn(value(EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), protocolV3.getDescribedInDOI(), RelatedPublication.PublicationType.DOI)));
+           p.setDescribedIn(value(EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), protocolV3.getDescribedInDOI(), RelatedPublication.PublicationType.DOI)));
        }
        else if(protocolV3.getDescribedInFile()!=null && protocolV3.getDescribedInFile().getName()!=null && protocolV3.getDescribedInFile().getIri()!=null){
            p.setDescribedInLink(new TargetExternalReference(protocolV3.getDescribedInFile().getIri(), protocolV3.getDescribedInFile().getName()));
@@ -84,6 +84,11 @@ public class SoftwareVersionTranslator extends EBRAINSTranslator<SoftwareVersion
         return Collections.singletonList("https://openminds.ebrains.eu/core/SoftwareVersion");
     }
 
+    @Override
+    public Set<String> getDOIs(SoftwareVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getPublications());
+    }
+
     public SoftwareVersion translate(SoftwareVersionV3 softwareVersion, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         SoftwareVersion s = new SoftwareVersion();
 
@@ -197,7 +202,7 @@ public class SoftwareVersionTranslator extends EBRAINSTranslator<SoftwareVersion
         }
 
         if (!CollectionUtils.isEmpty(softwareVersion.getPublications())) {
-            s.setPublications(softwareVersion.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            s.setPublications(softwareVersion.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         if (!CollectionUtils.isEmpty(softwareVersion.getApplicationCategory())) {
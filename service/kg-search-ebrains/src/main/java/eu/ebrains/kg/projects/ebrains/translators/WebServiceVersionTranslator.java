@@ -84,6 +84,11 @@ public class WebServiceVersionTranslator extends EBRAINSTranslator<WebServiceVer
         return Collections.singletonList("https://openminds.ebrains.eu/core/WebServiceVersion");
     }
 
+    @Override
+    public Set<String> getDOIs(WebServiceVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getPublications());
+    }
+
     public WebServiceVersion translate(WebServiceVersionV3 source, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         WebServiceVersion w = new WebServiceVersion();
 
@@ -188,7 +193,7 @@ public class WebServiceVersionTranslator extends EBRAINSTranslator<WebServiceVer
         }
 
         if(!CollectionUtils.isEmpty(source.getPublications())){
-            w.setPublications(source.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            w.setPublications(source.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         w.setAccessibility(value(source.getAccessibility()));
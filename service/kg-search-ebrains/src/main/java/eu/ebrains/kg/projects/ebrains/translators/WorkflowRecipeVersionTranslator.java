@@ -79,6 +79,20 @@ public class WorkflowRecipeVersionTranslator extends EBRAINSTranslator<WorkflowR
     }
 
 
+    @Override
+    public Set<String> getDOIs(WorkflowRecipeVersionV3 source) {
+        return EBRAINSTranslatorUtils.getDOIs(source.getPublications());
+    }
+
+    @Override
+    public Set<String> getResourceIds(WorkflowRecipeVersionV3 source) {
+        return Collections.singleton(getDiagramResourceId(source));
+    }
+
+    private static String getDiagramResourceId(WorkflowRecipeVersionV3 source) {
+        return String.format("%s-mermaid", source.getUUID());
+    }
+
     public WorkflowRecipeVersion translate(WorkflowRecipeVersionV3 source, DataStage dataStage, boolean liveMode, TranslatorUtils translatorUtils) throws TranslationException {
         WorkflowRecipeVersion w = new WorkflowRecipeVersion();
         w.setCategory(new Value<>("Workflow"));
@@ -182,7 +196,7 @@ public class WorkflowRecipeVersionTranslator extends EBRAINSTranslator<WorkflowR
         }
 
         if(!CollectionUtils.isEmpty(source.getPublications())){
-            w.setPublications(source.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationFormatter(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
+            w.setPublications(source.getPublications().stream().map(p -> EBRAINSTranslatorUtils.getFormattedDigitalIdentifier(translatorUtils.getDoiCitationResolver(), p.getIdentifier(), p.resolvedType())).filter(Objects::nonNull).map(Value::new).collect(Collectors.toList()));
         }
 
         w.setAccessibility(value(source.getAccessibility()));
@@ -223,7 +237,7 @@ public class WorkflowRecipeVersionTranslator extends EBRAINSTranslator<WorkflowR
             }
         }
 
-        final Document diagram = translatorUtils.getResource(String.format("%s-mermaid", source.getUUID()));
+        final Document diagram = translatorUtils.getResource(getDiagramResourceId(source));
         if(diagram!=null && diagram.getSource()!=null){
             final Object mermaid = diagram.getSource().get("mermaid");
             if(mermaid instanceof String){
@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.projects.ebrains.translators.utils;
+
+import eu.ebrains.kg.common.model.DOIReference;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The dataset versions (with a DOI) studying a specimen - used to link the specimens to the other publications they
+ * appear in. The lookup is loaded once and then kept up to date as dataset versions are written. To keep the footprint
+ * small, the DOIs are interned and the ids of the dataset versions are kept as pairs of longs.
+ */
+public class SpecimenLookup {
+
+    private final Instant createdAt = Instant.now();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> dois = new ArrayList<>();
+    private final Map<String, Integer> doiIndexes = new HashMap<>();
+    private final Map<UUID, DatasetVersionEntry> datasetVersions = new HashMap<>();
+    /**
+     * The ids of the dataset versions studying the specimen - the most and least significant bits of every id one after
+     * the other.
+     */
+    private final Map<UUID, long[]> datasetVersionsBySpecimen = new HashMap<>();
+
+    private static class DatasetVersionEntry {
+        private final int doi;
+        private final List<UUID> specimenIds;
+
+        private DatasetVersionEntry(int doi, List<UUID> specimenIds) {
+            this.doi = doi;
+            this.specimenIds = specimenIds;
+        }
+    }
+
+    public boolean isOutdated(Duration maxAge) {
+        return createdAt.plus(maxAge).isBefore(Instant.now());
+    }
+
+    /**
+     * Registers the specimens of the dataset version - replacing the ones it has been registered with before.
+     */
+    public void update(String datasetVersionId, String doi, Collection<String> specimenIds) {
+        final UUID id = toUUID(datasetVersionId);
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            doRemove(id);
+            if (doi != null && specimenIds != null && !specimenIds.isEmpty()) {
+                final List<UUID> specimens = specimenIds.stream().map(SpecimenLookup::toUUID).filter(Objects::nonNull).distinct().toList();
+                datasetVersions.put(id, new DatasetVersionEntry(intern(doi), specimens));
+                specimens.forEach(specimen -> datasetVersionsBySpecimen.merge(specimen, new long[]{id.getMostSignificantBits(), id.getLeastSignificantBits()}, SpecimenLookup::concat));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String datasetVersionId) {
+        final UUID id = toUUID(datasetVersionId);
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            doRemove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void doRemove(UUID id) {
+        final DatasetVersionEntry entry = datasetVersions.remove(id);
+        if (entry != null) {
+            entry.specimenIds.forEach(specimen -> datasetVersionsBySpecimen.computeIfPresent(specimen, (k, ids) -> without(ids, id)));
+        }
+    }
+
+    /**
+     * @return the publications studying the specimen or null if it is studied by one dataset version only
+     */
+    public Set<DOIReference> getReferences(UUID specimenId) {
+        lock.readLock().lock();
+        try {
+            final long[] ids = datasetVersionsBySpecimen.get(specimenId);
+            if (ids == null || ids.length <= 2) {
+                return null;
+            }
+            final Set<DOIReference> references = new HashSet<>();
+            for (int i = 0; i < ids.length; i += 2) {
+                final UUID id = new UUID(ids[i], ids[i + 1]);
+                references.add(new DOIReference(dois.get(datasetVersions.get(id).doi), id));
+            }
+            return references.size() > 1 ? references : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return datasetVersionsBySpecimen.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int intern(String doi) {
+        return doiIndexes.computeIfAbsent(doi, d -> {
+            dois.add(d);
+            return dois.size() - 1;
+        });
+    }
+
+    private static long[] concat(long[] ids, long[] additionalIds) {
+        final long[] result = Arrays.copyOf(ids, ids.length + additionalIds.length);
+        System.arraycopy(additionalIds, 0, result, ids.length, additionalIds.length);
+        return result;
+    }
+
+    private static long[] without(long[] ids, UUID id) {
+        final long[] result = new long[ids.length];
+        int length = 0;
+        for (int i = 0; i < ids.length; i += 2) {
+            if (ids[i] != id.getMostSignificantBits() || ids[i + 1] != id.getLeastSignificantBits()) {
+                result[length++] = ids[i];
+                result[length++] = ids[i + 1];
+            }
+        }
+        //Returning null removes the specimen from the lookup
+        return length == 0 ? null : Arrays.copyOf(result, length);
+    }
+
+    private static UUID toUUID(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
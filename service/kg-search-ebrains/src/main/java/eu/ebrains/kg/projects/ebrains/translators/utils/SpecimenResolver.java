@@ -24,17 +24,13 @@
 package eu.ebrains.kg.projects.ebrains.translators.utils;
 
 
-import eu.ebrains.kg.common.model.DOIReference;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.elasticsearch.Document;
-import eu.ebrains.kg.common.model.elasticsearch.Result;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import eu.ebrains.kg.common.utils.ESHelper;
-import org.springframework.util.CollectionUtils;
-import org.springframework.web.reactive.function.BodyInserters;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SpecimenResolver {
 
@@ -46,75 +42,22 @@ public class SpecimenResolver {
         this.esHelper = esHelper;
     }
 
-    public Map<String, Set<DOIReference>> loadSpecimenLookupMap(DataStage stage) {
-        Map<String, Set<DOIReference>> collector = new HashMap<>();
-        doLoadSpecimenLookupMap(null, esHelper.getIndexesForDocument(stage), collector);
-        //Remove the entries with only one referenced product
-        return collector.entrySet().stream().filter(e -> e.getValue().size()>1).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-    private String createQueryForLoadingTheSpecimenLookupMap(UUID searchAfterId) {
-        return String.format("""
-                {
-                  "size": %d,
-                  "_source": ["specimenIds", "doi.value", "id"],
-                  "sort": [
-                    {"_id": "asc"}
-                  ],%s
-                  "query": {
-                  "bool": {
-                    "must": [
-                        {
-                            "exists": {
-                                "field": "specimenIds"
-                            }
-                        },
-                        {
-                            "exists": {
-                                "field": "doi.value"
-                            }
-                        }
-                    ]
-                   }
-                  }
-                }
-                """, ESServiceClient.ES_QUERY_SIZE, searchAfterId == null ? "" : String.format("""
-                                
-                  "search_after": [
-                      "%s"
-                  ],
-                """, searchAfterId));
-    }
-
-    private void doLoadSpecimenLookupMap(UUID lastId, String index, Map<String, Set<DOIReference>> collector) {
-        final String query = createQueryForLoadingTheSpecimenLookupMap(lastId);
-        final Result result = esServiceClient.searchDocuments(index, "hits.hits._source", BodyInserters.fromValue(query));
-        final Result.Hits hits = result.getHits();
-        if (hits != null) {
-            final List<Document> documents = hits.getHits();
-            if (!CollectionUtils.isEmpty(documents)) {
-                documents.forEach(document -> {
-                    final Map<String, Object> docSource = document.getSource();
-                    final UUID id = getId(docSource);
-                    final String doi = getDOI(docSource);
-                    final List<String> specimenIds = getSpecimenIds(docSource);
-                    if(!CollectionUtils.isEmpty(specimenIds)){
-                        specimenIds.forEach(specimenId -> {
-                            collector.computeIfAbsent(specimenId, s -> new HashSet<>());
-                            collector.get(specimenId).add(new DOIReference(doi, id));
-                        });
-                    }
-                });
-                final Document lastDocument = documents.get(documents.size() - 1);
-                if(lastDocument!=null){
-                    UUID nextId = getId(lastDocument.getSource());
-                    if (nextId != null && !nextId.equals(lastId)) {
-                        doLoadSpecimenLookupMap(nextId, index, collector);
-                    }
+    public SpecimenLookup loadSpecimenLookup(DataStage stage) {
+        SpecimenLookup collector = new SpecimenLookup();
+        final Map<String, Object> query = Map.of("bool", Map.of("must", List.of(
+                Map.of("exists", Map.of("field", "specimenIds")),
+                Map.of("exists", Map.of("field", "doi.value"))
+        )));
+        try (Stream<Document> documents = esServiceClient.scan(esHelper.getIndexesForDocument(stage), query, List.of("specimenIds", "doi.value", "id"))) {
+            documents.forEach(document -> {
+                final Map<String, Object> docSource = document.getSource();
+                final UUID id = getId(docSource);
+                if (id != null) {
+                    collector.update(id.toString(), getDOI(docSource), getSpecimenIds(docSource));
                 }
-            }
+            });
         }
-
-
+        return collector;
     }
 
     private List<String> getSpecimenIds(Map<String, Object> docSource){
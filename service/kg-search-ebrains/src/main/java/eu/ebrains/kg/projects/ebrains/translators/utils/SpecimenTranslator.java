@@ -36,6 +36,7 @@ import eu.ebrains.kg.projects.ebrains.target.DatasetVersion;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -49,8 +50,8 @@ public class SpecimenTranslator extends TranslatorBase {
     private static final String PART_OF = "partOf";
 
 
-    public SpecimenTranslator(String datasetVersionId, List<String> errors, Map<String, Set<DOIReference>> specimenLookupMap) {
-        this.translators = Arrays.asList(new SubjectTranslator(datasetVersionId, specimenLookupMap), new SubjectGroupTranslator(datasetVersionId, specimenLookupMap), new TissueSampleTranslator(datasetVersionId, specimenLookupMap), new TissueSampleCollectionTranslator(datasetVersionId, specimenLookupMap));
+    public SpecimenTranslator(String datasetVersionId, List<String> errors, SpecimenLookup specimenLookup) {
+        this.translators = Arrays.asList(new SubjectTranslator(datasetVersionId, specimenLookup), new SubjectGroupTranslator(datasetVersionId, specimenLookup), new TissueSampleTranslator(datasetVersionId, specimenLookup), new TissueSampleCollectionTranslator(datasetVersionId, specimenLookup));
         this.errors = errors;
     }
 
@@ -167,6 +168,13 @@ public class SpecimenTranslator extends TranslatorBase {
         }
     }
 
+    /**
+     * The key is derived from the path of the element in the hierarchy (instead of being random) to keep the translation deterministic
+     */
+    private static String getHierarchyKey(SpecimenHierarchyTranslationContext context, String parentRelationType, String uuid) {
+        return UUID.nameUUIDFromBytes(String.format("%s/%s/%s", String.join("/", context.handledInstances), parentRelationType, uuid).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
     private BasicHierarchyElement<Object> translateToBasicHierarchyElement(DatasetVersionV3.StudiedState studiedState, SpecimenHierarchyTranslationContext context, boolean attachRootElementAsChild, int order, String parentRelationType) {
         final String uuid = IdUtils.getUUID(studiedState.getId());
         if (context.handledInstances.contains(uuid)) {
@@ -176,7 +184,7 @@ public class SpecimenTranslator extends TranslatorBase {
             return null;
         }
         BasicHierarchyElement<Object> elState = new BasicHierarchyElement<>();
-        elState.setKey(UUID.randomUUID().toString());
+        elState.setKey(getHierarchyKey(context, parentRelationType, uuid));
         context.handledInstances.push(uuid);
         elState.setParentRelationType(parentRelationType);
         final AbstractSpecimenTranslator<?> translator = getTranslator(studiedState);
@@ -279,20 +287,20 @@ public class SpecimenTranslator extends TranslatorBase {
         private final String stateColor;
 
         protected final String datasetVersionId;
-        private final Map<String, Set<DOIReference>> specimenLookupMap;
+        private final SpecimenLookup specimenLookup;
 
-        public AbstractSpecimenTranslator(String prefix, String specimenType, String specimenColor, String stateType, String stateColor, String datasetVersionId, Map<String, Set<DOIReference>> specimenLookupMap) {
+        public AbstractSpecimenTranslator(String prefix, String specimenType, String specimenColor, String stateType, String stateColor, String datasetVersionId, SpecimenLookup specimenLookup) {
             this.prefix = prefix;
             this.specimenType = specimenType;
             this.specimenColor = specimenColor;
             this.stateType = stateType;
             this.stateColor = stateColor;
             this.datasetVersionId = datasetVersionId;
-            this.specimenLookupMap = specimenLookupMap;
+            this.specimenLookup = specimenLookup;
         }
 
         protected List<TargetInternalReference> getOtherPublications(UUID specimenId){
-            final Set<DOIReference> doiReferences = specimenLookupMap.get(specimenId.toString());
+            final Set<DOIReference> doiReferences = specimenLookup.getReferences(specimenId);
             return doiReferences == null ? null : doiReferences.stream().map(doiReference ->
                     new TargetInternalReference(
                             doiReference.getUuid().toString(),
@@ -340,8 +348,8 @@ public class SpecimenTranslator extends TranslatorBase {
 
     private static class SubjectTranslator extends AbstractSpecimenTranslator<DatasetVersion.DSVSubject> {
 
-        public SubjectTranslator(String datasetVersionId, Map<String, Set<DOIReference>> specimenLookupMap) {
-            super("Subject", "https://openminds.ebrains.eu/core/Subject", "#ffbe00", "https://openminds.ebrains.eu/core/SubjectState", "#e68d0d", datasetVersionId, specimenLookupMap);
+        public SubjectTranslator(String datasetVersionId, SpecimenLookup specimenLookup) {
+            super("Subject", "https://openminds.ebrains.eu/core/Subject", "#ffbe00", "https://openminds.ebrains.eu/core/SubjectState", "#e68d0d", datasetVersionId, specimenLookup);
         }
 
         @Override
@@ -415,8 +423,8 @@ public class SpecimenTranslator extends TranslatorBase {
 
     private static class SubjectGroupTranslator extends AbstractSpecimenTranslator<DatasetVersion.DSVSubjectGroup> {
 
-        public SubjectGroupTranslator(String datasetVersionId, Map<String, Set<DOIReference>> specimenLookupMap) {
-            super("Subject group", "https://openminds.ebrains.eu/core/SubjectGroup", "#8a1f0d", "https://openminds.ebrains.eu/core/SubjectGroupState", "#8a1f0d", datasetVersionId, specimenLookupMap);
+        public SubjectGroupTranslator(String datasetVersionId, SpecimenLookup specimenLookup) {
+            super("Subject group", "https://openminds.ebrains.eu/core/SubjectGroup", "#8a1f0d", "https://openminds.ebrains.eu/core/SubjectGroupState", "#8a1f0d", datasetVersionId, specimenLookup);
         }
 
         @Override
@@ -501,8 +509,8 @@ public class SpecimenTranslator extends TranslatorBase {
 
     private static class TissueSampleTranslator extends AbstractSpecimenTranslator<DatasetVersion.DSVTissueSample> {
 
-        public TissueSampleTranslator(String datasetVersionId, Map<String, Set<DOIReference>> specimenLookupMap) {
-            super("Tissue sample", "https://openminds.ebrains.eu/core/TissueSample", "#3176e1", "https://openminds.ebrains.eu/core/TissueSampleState", "#393ac6", datasetVersionId, specimenLookupMap);
+        public TissueSampleTranslator(String datasetVersionId, SpecimenLookup specimenLookup) {
+            super("Tissue sample", "https://openminds.ebrains.eu/core/TissueSample", "#3176e1", "https://openminds.ebrains.eu/core/TissueSampleState", "#393ac6", datasetVersionId, specimenLookup);
         }
 
         @Override
@@ -579,8 +587,8 @@ public class SpecimenTranslator extends TranslatorBase {
 
     private static class TissueSampleCollectionTranslator extends AbstractSpecimenTranslator<DatasetVersion.DSVTissueSampleCollection> {
 
-        public TissueSampleCollectionTranslator(String datasetVersionId, Map<String, Set<DOIReference>> specimenLookupMap) {
-            super("Tissue sample collection", "https://openminds.ebrains.eu/core/TissueSampleCollection", "#78b5b5", "https://openminds.ebrains.eu/core/TissueSampleCollectionState", "#497d7d", datasetVersionId, specimenLookupMap);
+        public TissueSampleCollectionTranslator(String datasetVersionId, SpecimenLookup specimenLookup) {
+            super("Tissue sample collection", "https://openminds.ebrains.eu/core/TissueSampleCollection", "#78b5b5", "https://openminds.ebrains.eu/core/TissueSampleCollectionState", "#497d7d", datasetVersionId, specimenLookup);
         }
 
         @Override
@@ -671,10 +679,10 @@ public class SpecimenTranslator extends TranslatorBase {
             errors.add(error);
             return null;
         }
-        context.handledInstances.push(uuid);
         BasicHierarchyElement<Object> el = new BasicHierarchyElement<>();
+        el.setKey(getHierarchyKey(context, parentRelationType, uuid));
+        context.handledInstances.push(uuid);
         logger.debug("translating {}", studiedSpecimen.getId());
-        el.setKey(UUID.randomUUID().toString());
         el.setParentRelationType(parentRelationType);
         final AbstractSpecimenTranslator<T> specimenTranslator = getTranslator(studiedSpecimen);
         T data = null;
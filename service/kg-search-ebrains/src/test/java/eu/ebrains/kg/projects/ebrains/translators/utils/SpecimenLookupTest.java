@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.projects.ebrains.translators.utils;
+
+import eu.ebrains.kg.common.model.DOIReference;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpecimenLookupTest {
+
+    private static final String DATASET_VERSION_A = "6c1ed5a3-8a3f-4d9a-a8a4-2f1f5c6b0a01";
+    private static final String DATASET_VERSION_B = "6c1ed5a3-8a3f-4d9a-a8a4-2f1f5c6b0a02";
+    private static final String DATASET_VERSION_C = "6c1ed5a3-8a3f-4d9a-a8a4-2f1f5c6b0a03";
+    private static final String SPECIMEN_1 = "9d3b7a52-4c1e-4f0b-bf53-0c7f3a1d2e01";
+    private static final String SPECIMEN_2 = "9d3b7a52-4c1e-4f0b-bf53-0c7f3a1d2e02";
+
+    private final SpecimenLookup specimenLookup = new SpecimenLookup();
+
+    private static DOIReference reference(String doi, String datasetVersionId) {
+        return new DOIReference(doi, UUID.fromString(datasetVersionId));
+    }
+
+    @Test
+    void getReferencesOfSpecimenStudiedByMultipleDatasetVersions() {
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_1, SPECIMEN_2));
+        specimenLookup.update(DATASET_VERSION_B, "10.25493/BBB", List.of(SPECIMEN_1));
+
+        assertEquals(Set.of(reference("10.25493/AAA", DATASET_VERSION_A), reference("10.25493/BBB", DATASET_VERSION_B)), specimenLookup.getReferences(UUID.fromString(SPECIMEN_1)));
+        assertEquals(2, specimenLookup.size());
+    }
+
+    @Test
+    void getReferencesOfSpecimenStudiedBySingleDatasetVersion() {
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_1, SPECIMEN_2));
+        specimenLookup.update(DATASET_VERSION_B, "10.25493/BBB", List.of(SPECIMEN_1));
+
+        assertNull(specimenLookup.getReferences(UUID.fromString(SPECIMEN_2)));
+        assertNull(specimenLookup.getReferences(UUID.randomUUID()));
+    }
+
+    @Test
+    void updateReplacesSpecimensOfDatasetVersion() {
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_B, "10.25493/BBB", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_C, "10.25493/CCC", List.of(SPECIMEN_2));
+
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_2));
+
+        assertNull(specimenLookup.getReferences(UUID.fromString(SPECIMEN_1)));
+        assertEquals(Set.of(reference("10.25493/AAA", DATASET_VERSION_A), reference("10.25493/CCC", DATASET_VERSION_C)), specimenLookup.getReferences(UUID.fromString(SPECIMEN_2)));
+    }
+
+    @Test
+    void updateWithoutDOIRemovesDatasetVersion() {
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_B, "10.25493/BBB", List.of(SPECIMEN_1));
+
+        specimenLookup.update(DATASET_VERSION_B, null, List.of(SPECIMEN_1));
+
+        assertNull(specimenLookup.getReferences(UUID.fromString(SPECIMEN_1)));
+    }
+
+    @Test
+    void remove() {
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_B, "10.25493/BBB", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_C, "10.25493/CCC", List.of(SPECIMEN_1));
+
+        specimenLookup.remove(DATASET_VERSION_B);
+
+        assertEquals(Set.of(reference("10.25493/AAA", DATASET_VERSION_A), reference("10.25493/CCC", DATASET_VERSION_C)), specimenLookup.getReferences(UUID.fromString(SPECIMEN_1)));
+
+        specimenLookup.remove(DATASET_VERSION_A);
+        specimenLookup.remove(DATASET_VERSION_C);
+
+        assertNull(specimenLookup.getReferences(UUID.fromString(SPECIMEN_1)));
+        assertEquals(0, specimenLookup.size());
+    }
+
+    @Test
+    void ignoreInvalidIds() {
+        specimenLookup.update("https://kg.ebrains.eu/api/instances/foo", "10.25493/AAA", List.of(SPECIMEN_1));
+        specimenLookup.update(DATASET_VERSION_A, "10.25493/AAA", List.of("foo", SPECIMEN_1));
+        specimenLookup.remove("foo");
+
+        assertEquals(1, specimenLookup.size());
+    }
+}
@@ -38,7 +38,6 @@ import org.springframework.util.CollectionUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -57,7 +56,7 @@ public class SpecimenTranslatorTest {
 
     private void testSpecimenTranslation(String test, String id) {
         //given
-        SpecimenTranslator translator = new SpecimenTranslator(String.format("https://kg.ebrains.eu/api/instances/%s", id), new ArrayList<>(), Collections.emptyMap());
+        SpecimenTranslator translator = new SpecimenTranslator(String.format("https://kg.ebrains.eu/api/instances/%s", id), new ArrayList<>(), new SpecimenLookup());
 
         final List<DatasetVersionV3.StudiedSpecimen> payload = parseSource(test);
         final BasicHierarchyElement<?> expectation = parseTarget(test);
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.projects.ebrains.translators.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.ebrains.kg.common.controller.translation.utils.TranslationUtils;
+import eu.ebrains.kg.common.model.target.TargetInternalReference;
+import eu.ebrains.kg.projects.ebrains.source.DatasetVersionV3;
+import eu.ebrains.kg.projects.ebrains.target.DatasetVersion;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetInternalReferencesTest {
+    private final ObjectMapper objectMapper;
+
+    TargetInternalReferencesTest() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nestedTissueSampleCollectionsWithSingleStatesAttachedToASubject", "subjectsWithMultipleStatesDependingOnEachOther", "subjectsWithTwoStatesAndAttachedTissueSampleCollections", "tissueSampleCollectionWithoutSubject", "tissueSampleCollectionsWithServiceLinks", "tissueSampleFullyConnectedToASubjectState", "tissueSampleInTissueSampleCollection", "tissueSampleWithTwoStatesInTissueSampleCollection", "tissueSampleWithoutSubjectAndCollectionButWithMultipleSexAndSpecies", "tissueSamplesWithSingleStateAttachedToSubjectsWithSingleState", "twoTissueSamplesInTissueSampleCollection"})
+    void collectsAllReferencesOfDatasetVersion(String test) {
+        //given
+        final SpecimenTranslator translator = new SpecimenTranslator("https://kg.ebrains.eu/api/instances/foo", new ArrayList<>(), new SpecimenLookup());
+        final DatasetVersion datasetVersion = new DatasetVersion();
+        datasetVersion.setSpecimenBySubject(translator.translateToHierarchy(parseSource(test)));
+
+        //when
+        final List<TargetInternalReference> references = new ArrayList<>();
+        TranslationUtils.collectAllTargetInternalReferences(datasetVersion, references);
+
+        //then
+        final List<String> expected = new ArrayList<>();
+        collectSerializedReferences(objectMapper.valueToTree(datasetVersion), expected);
+        assertFalse(expected.isEmpty());
+        assertEquals(sorted(expected), sorted(references.stream().map(TargetInternalReference::getReference).toList()));
+    }
+
+    private void collectSerializedReferences(JsonNode node, List<String> collector) {
+        if (node.isObject() && node.has("reference")) {
+            collector.add(node.get("reference").isNull() ? null : node.get("reference").asText());
+        }
+        node.forEach(child -> collectSerializedReferences(child, collector));
+    }
+
+    private static List<String> sorted(List<String> references) {
+        final List<String> result = new ArrayList<>(references);
+        result.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        return result;
+    }
+
+    private List<DatasetVersionV3.StudiedSpecimen> parseSource(String test) {
+        try {
+            return objectMapper.readValue(new File(Objects.requireNonNull(getClass().getClassLoader().getResource(String.format("%s_source.json", test))).getFile()), new TypeReference<List<DatasetVersionV3.StudiedSpecimen>>() {});
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Was not able to parse source for %s", test), e);
+        }
+    }
+}
@@ -23,7 +23,7 @@
 
 package eu.ebrains.kg.search.api;
 
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.search.security.UserRoles;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -35,22 +35,22 @@ import java.security.Principal;
 @RestController
 @SuppressWarnings("java:S1452") // we keep the generics intentionally
 public class Internal {
-    private final DOICitationFormatter doiCitationFormatter;
+    private final DOICitationResolver doiCitationResolver;
 
-    public Internal(DOICitationFormatter doiCitationFormatter) {
-        this.doiCitationFormatter = doiCitationFormatter;
+    public Internal(DOICitationResolver doiCitationResolver) {
+        this.doiCitationResolver = doiCitationResolver;
     }
 
     @PostMapping("/doiCitations")
     @UserRoles.MustBeAdmin
     public ResponseEntity<String> refreshDOICitation(@RequestParam("doi") String doi, @RequestParam(value = "style", defaultValue = "apa") String style, @RequestParam(value = "contentType", defaultValue = "text/x-bibliography") String contentType, Principal principal) {
-        return ResponseEntity.ok(this.doiCitationFormatter.refreshDOICitation(doi, style, contentType));
+        return ResponseEntity.ok(this.doiCitationResolver.refresh(doi, style, contentType));
     }
 
     @PostMapping("/evictDoiCitations")
     @UserRoles.MustBeAdmin
     public ResponseEntity<Void> evictDoiCitations() {
-        this.doiCitationFormatter.evictAll();
+        this.doiCitationResolver.evictAll();
         return ResponseEntity.ok().build();
     }
 }
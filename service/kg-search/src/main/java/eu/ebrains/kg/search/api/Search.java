@@ -29,7 +29,7 @@ import eu.ebrains.kg.common.controller.translation.TranslatorRegistry;
 import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.model.DataStage;
 import eu.ebrains.kg.common.model.target.TargetInstance;
-import eu.ebrains.kg.common.services.DOICitationFormatter;
+import eu.ebrains.kg.common.services.DOICitationResolver;
 import eu.ebrains.kg.common.services.KGServiceClient;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
 import eu.ebrains.kg.common.utils.TranslationException;
@@ -59,16 +59,16 @@ public class Search {
     private final SearchController searchController;
     private final TranslationController translationController;
     private final KG kgV3;
-    private final DOICitationFormatter doiCitationFormatter;
+    private final DOICitationResolver doiCitationResolver;
     private final TranslatorRegistry translatorRegistry;
 
-    public Search(KGServiceClient kgv3ServiceClient, SettingsController definitionController, SearchController searchController, TranslationController translationController, KG kgV3, DOICitationFormatter doiCitationFormatter, TranslatorRegistry translatorRegistry) {
+    public Search(KGServiceClient kgv3ServiceClient, SettingsController definitionController, SearchController searchController, TranslationController translationController, KG kgV3, DOICitationResolver doiCitationResolver, TranslatorRegistry translatorRegistry) {
         this.kgv3ServiceClient = kgv3ServiceClient;
         this.definitionController = definitionController;
         this.searchController = searchController;
         this.translationController = translationController;
         this.kgV3 = kgV3;
-        this.doiCitationFormatter = doiCitationFormatter;
+        this.doiCitationResolver = doiCitationResolver;
         this.translatorRegistry = translatorRegistry;
     }
 
@@ -111,15 +111,15 @@ public class Search {
             ));
         }
         result.put("profile", translatorRegistry.getIndexPrefix().orElse("ebrains"));
-        result.put("types", definitionController.generateTypes());
-        result.put("typeMappings", definitionController.generateTypeMappings());
+        result.put("types", definitionController.getTypes());
+        result.put("typeMappings", definitionController.getTypeMappings());
         return result;
     }
 
     @GetMapping("/citation")
     public ResponseEntity<String> getCitation(@RequestParam("doi") String doiWithoutPrefix, @RequestParam("style") String style, @RequestParam("contentType") String contentType) {
         String doi = String.format("https://doi.org/%s", doiWithoutPrefix);
-        String citation = doiCitationFormatter.getDOICitation(doi, style, contentType);
+        String citation = doiCitationResolver.getCitation(doi, style, contentType);
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.TEXT_PLAIN)
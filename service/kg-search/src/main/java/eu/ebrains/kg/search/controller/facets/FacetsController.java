@@ -28,7 +28,6 @@ import eu.ebrains.kg.common.utils.MetaModelUtils;
 import eu.ebrains.kg.search.model.Facet;
 import eu.ebrains.kg.search.utils.FacetsUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Type;
@@ -37,6 +36,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Derives the facets of a type from its target class - evaluated once at startup by the {@link eu.ebrains.kg.search.controller.metamodel.MetaModelRegistry}.
+ */
 @Component
 public class FacetsController {
 
@@ -46,7 +48,6 @@ public class FacetsController {
         this.utils = utils;
     }
 
-    @Cacheable(value = "facets", unless = "#type == null", key = "#type")
     public List<Facet> getFacets(String type) {
         List<Facet> facets  = new ArrayList<>();
         if (StringUtils.isNotBlank(type)) {
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2018 - 2021 Swiss Federal Institute of Technology Lausanne (EPFL)
+ *  Copyright 2021 - 2023 EBRAINS AISBL
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  This open source software code was developed in part or in whole in the
+ *  Human Brain Project, funded from the European Union's Horizon 2020
+ *  Framework Programme for Research and Innovation under
+ *  Specific Grant Agreements No. 720270, No. 785907, and No. 945539
+ *  (Human Brain Project SGA1, SGA2 and SGA3).
+ */
+
+package eu.ebrains.kg.search.controller.metamodel;
+
+import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
+import eu.ebrains.kg.common.model.target.FieldInfo;
+import eu.ebrains.kg.common.model.target.MetaInfo;
+import eu.ebrains.kg.common.utils.MetaModelUtils;
+import eu.ebrains.kg.search.controller.facets.FacetsController;
+import eu.ebrains.kg.search.controller.search.SearchFieldsController;
+import eu.ebrains.kg.search.model.Facet;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Everything the search needs to know about the target types, built once from the target classes at startup.
+ * The request paths only look the (immutable) values up so they don't need any reflection.
+ */
+@Component
+public class MetaModelRegistry {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private static final List<String> EXCLUDED_FIELD_NAMES = List.of("title");
+
+    private final Map<String, TypeMetaModel> types;
+    private final List<String> defaultQueryFields;
+
+    public MetaModelRegistry(MetaModelUtils utils, FacetsController facetsController, SearchFieldsController searchFieldsController) {
+        Map<String, TypeMetaModel> types = new LinkedHashMap<>();
+        for (TranslatorModel<?, ?> model : utils.getTranslatorModels()) {
+            String type = MetaModelUtils.getNameForClass(model.getTargetClass());
+            if (!types.containsKey(type)) {
+                types.put(type, new TypeMetaModel(type, model.getTargetClass(), utils, facetsController, searchFieldsController));
+            }
+        }
+        this.types = Collections.unmodifiableMap(types);
+        this.defaultQueryFields = List.copyOf(searchFieldsController.getEsQueryFields(null));
+        logger.info(String.format("Meta model registry built for %d types", types.size()));
+    }
+
+    private TypeMetaModel getType(String type) {
+        return type == null ? null : types.get(type);
+    }
+
+    public Class<?> getTargetClass(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getTargetClass() : null;
+    }
+
+    public MetaInfo getMetaInfo(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getMetaInfo() : null;
+    }
+
+    public List<String> getSemanticTypes(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getSemanticTypes() : Collections.emptyList();
+    }
+
+    public List<String> getHitFieldNames(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getHitFieldNames() : Collections.emptyList();
+    }
+
+    public List<String> getDocumentFieldNames(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getDocumentFieldNames() : Collections.emptyList();
+    }
+
+    public List<Facet> getFacets(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getFacets() : Collections.emptyList();
+    }
+
+    public List<String> getHighlight(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getHighlight() : Collections.emptyList();
+    }
+
+    public List<String> getSuggestionFields(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getSuggestionFields() : Collections.emptyList();
+    }
+
+    /**
+     * @return the fields to query (with their boost) - the ones of all types, the ones of the given type taking precedence
+     */
+    public List<String> getQueryFields(String type) {
+        TypeMetaModel metaModel = getType(type);
+        return metaModel != null ? metaModel.getQueryFields() : defaultQueryFields;
+    }
+
+    @Getter
+    private static class TypeMetaModel {
+        private final Class<?> targetClass;
+        private final MetaInfo metaInfo;
+        private final List<String> semanticTypes;
+        private final List<String> hitFieldNames;
+        private final List<String> documentFieldNames;
+        private final List<Facet> facets;
+        private final List<String> highlight;
+        private final List<String> suggestionFields;
+        private final List<String> queryFields;
+
+        private TypeMetaModel(String type, Class<?> targetClass, MetaModelUtils utils, FacetsController facetsController, SearchFieldsController searchFieldsController) {
+            this.targetClass = targetClass;
+            this.metaInfo = targetClass.getAnnotation(MetaInfo.class);
+            this.semanticTypes = List.copyOf(utils.getSemanticTypes(type));
+            this.hitFieldNames = getFieldNames(utils, targetClass, FieldInfo::overview);
+            this.documentFieldNames = getFieldNames(utils, targetClass, FieldInfo::visible);
+            this.facets = List.copyOf(facetsController.getFacets(type));
+            this.highlight = List.copyOf(searchFieldsController.getHighlight(type));
+            this.suggestionFields = List.copyOf(searchFieldsController.getSuggestionFields(type));
+            this.queryFields = List.copyOf(searchFieldsController.getEsQueryFields(type));
+        }
+
+        private static List<String> getFieldNames(MetaModelUtils utils, Class<?> targetClass, Predicate<FieldInfo> predicate) {
+            List<String> fieldNames = new ArrayList<>();
+            utils.visitTypeFields(targetClass, field -> {
+                FieldInfo info = field.getAnnotation(FieldInfo.class);
+                if (info != null && predicate.test(info)) {
+                    String fieldName = utils.getPropertyName(field);
+                    if (!EXCLUDED_FIELD_NAMES.contains(fieldName)) {
+                        fieldNames.add(fieldName);
+                    }
+                }
+            });
+            return List.copyOf(fieldNames);
+        }
+    }
+}
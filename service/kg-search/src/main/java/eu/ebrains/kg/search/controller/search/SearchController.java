@@ -33,7 +33,7 @@ import eu.ebrains.kg.common.model.target.*;
 import eu.ebrains.kg.common.services.ESServiceClient;
 import eu.ebrains.kg.common.utils.ESHelper;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
-import eu.ebrains.kg.search.controller.facets.FacetsController;
+import eu.ebrains.kg.search.controller.metamodel.MetaModelRegistry;
 import eu.ebrains.kg.search.model.Facet;
 import eu.ebrains.kg.search.model.FacetValue;
 import eu.ebrains.kg.search.utils.*;
@@ -43,12 +43,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Type;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static eu.ebrains.kg.search.utils.FacetsUtils.FACET_BOOKMARKS;
 
@@ -57,8 +54,7 @@ import static eu.ebrains.kg.search.utils.FacetsUtils.FACET_BOOKMARKS;
 public class SearchController extends FacetAggregationUtils {
 ;
     private final ESServiceClient esServiceClient;
-    private final FacetsController facetsController;
-    private final SearchFieldsController searchFieldsController;
+    private final MetaModelRegistry metaModelRegistry;
     private final MetaModelUtils utils;
     private final ESHelper esHelper;
     private final KG kg;
@@ -67,16 +63,14 @@ public class SearchController extends FacetAggregationUtils {
 
     public SearchController(
             ESServiceClient esServiceClient,
-            FacetsController facetsController,
-            SearchFieldsController searchFieldsController,
+            MetaModelRegistry metaModelRegistry,
             MetaModelUtils utils,
             ESHelper esHelper,
             KG kg
 
     ) {
         this.esServiceClient = esServiceClient;
-        this.facetsController = facetsController;
-        this.searchFieldsController = searchFieldsController;
+        this.metaModelRegistry = metaModelRegistry;
         this.utils = utils;
         this.esHelper = esHelper;
         this.kg = kg;
@@ -108,7 +102,7 @@ public class SearchController extends FacetAggregationUtils {
 
     private List<UUID> getBookmarkedIds(Map<String, FacetValue> facetValues, String type) {
 //        if (principal != null && principal.getToken() != null && principal.getToken().getExpiresAt()!=null && principal.getToken().getExpiresAt().isBefore(Instant.now())){
-            List<String> semanticTypes = this.utils.getSemanticTypes(type);
+            List<String> semanticTypes = metaModelRegistry.getSemanticTypes(type);
             if (!CollectionUtils.isEmpty(semanticTypes)) {
                 List<UUID> ids = new ArrayList<>();
                 semanticTypes.forEach(s -> {
@@ -168,30 +162,14 @@ public class SearchController extends FacetAggregationUtils {
     }
 
     public ResponseEntity<?> getFilesFromRepo(DataStage stage, UUID id, String format, String groupingType) {
-        List<Object> data = new ArrayList<>();
-        UUID searchAfterUUID = null;
-        int total = 0;
-        boolean isFirstRequest = true;
         String fileIndex = esHelper.getAutoReleasedIndex(stage, utils.getFileClass(), false);
-        while (isFirstRequest || searchAfterUUID != null) {
-            isFirstRequest = false;
-            try {
-                Result filesFromRepo = esServiceClient.getFilesFromRepo(fileIndex, id, searchAfterUUID, 10000, format, groupingType);
-                List<Document> hits = filesFromRepo.getHits().getHits();
-                List<Object> paginatedData = hits.stream().map(Document::getSource).filter(Objects::nonNull).collect(Collectors.toList());
-                data.addAll(paginatedData);
-                if (!CollectionUtils.isEmpty(hits)) {
-                    searchAfterUUID = MetaModelUtils.castToUUID(hits.get(hits.size() - 1).getId());
-                } else {
-                    searchAfterUUID = null;
-                }
-                total = filesFromRepo.getHits().getTotal().getValue();
-            } catch (WebClientResponseException e) {
-                return ResponseEntity.status(e.getStatusCode()).build();
-            }
+        try (Stream<Document> files = esServiceClient.getFilesFromRepo(fileIndex, id, format, groupingType)) {
+            List<Object> data = files.map(Document::getSource).filter(Objects::nonNull).collect(Collectors.toList());
+            Map<String, Object> result = Map.of(TOTAL, data.size(), "data", data);
+            return ResponseEntity.ok(result);
+        } catch (WebClientResponseException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
         }
-        Map<String, Object> result = Map.of(TOTAL, total, "data", data);
-        return ResponseEntity.ok(result);
     }
 
     public Map<String, Object> search(String q, String type, int from, int size, Map<String, FacetValue> facetValues, DataStage dataStage) {
@@ -215,13 +193,9 @@ public class SearchController extends FacetAggregationUtils {
         if (esHighlight != null) {
             payload.put("highlight", esHighlight);
         }
-        Type targetClass = utils.getTypeTargetClass(type);
-        MetaInfo metaInfo = null;
-        if (targetClass != null) {
-            metaInfo = ((Class<?>) targetClass).getAnnotation(MetaInfo.class);
-        }
+        MetaInfo metaInfo = metaModelRegistry.getMetaInfo(type);
         payload.put("sort", getEsSort(metaInfo, StringUtils.isNotBlank(q)));
-        List<Facet> facets = facetsController.getFacets(type);
+        List<Facet> facets = metaModelRegistry.getFacets(type);
         Map<String, Object> activeFilters = FiltersUtils.getActiveFilters(facets, type, idsToFiler, facetValues);
         Object esPostFilter = FiltersUtils.getFilter(activeFilters, null);
         payload.put("post_filter", esPostFilter);
@@ -258,7 +232,7 @@ public class SearchController extends FacetAggregationUtils {
         if (result.getHits() == null || result.getHits().getHits() == null) {
             return Collections.emptyList();
         }
-        List<String> fieldNames = getHitFieldNames(type);
+        List<String> fieldNames = metaModelRegistry.getHitFieldNames(type);
         return result.getHits().getHits().stream().map(h -> {
             Map<String, Object> source = h.getSource();
             Map<String, Object> hit = new HashMap<>();
@@ -352,7 +326,7 @@ public class SearchController extends FacetAggregationUtils {
             res.put("previews", previews);
         }
 
-        List<String> fieldNames = getDocumentFieldNames(type);
+        List<String> fieldNames = metaModelRegistry.getDocumentFieldNames(type);
         res.put("fields", getFields(source, fieldNames));
         return res;
     }
@@ -495,40 +469,15 @@ public class SearchController extends FacetAggregationUtils {
         return fields;
     }
 
-    private List<String> getFieldNames(String type, Predicate<FieldInfo> predicate, List<String> except) {
-        List<String> fieldNames = new ArrayList<>();
-
-        Consumer<Field> collect = field -> {
-            FieldInfo info = field.getAnnotation(FieldInfo.class);
-            if (info != null && predicate.test(info)) {
-                String fieldName = utils.getPropertyName(field);
-                if (!except.contains(fieldName)) {
-                    fieldNames.add(utils.getPropertyName(field));
-                }
-            }
-        };
-
-        utils.visitTypeFields(type, collect);
-        return fieldNames;
-    }
-
-    private List<String> getDocumentFieldNames(String type) {
-        return getFieldNames(type, FieldInfo::visible, List.of("title"));
-    }
-
-    private List<String> getHitFieldNames(String type) {
-        return getFieldNames(type, FieldInfo::overview, List.of("title"));
-    }
-
     private Map<String, String> getSuggestions(List<String> sanitizedQuery, DataStage dataStage, String type) {
         Map<String, String> result = new LinkedHashMap<>();
         if (!sanitizedQuery.isEmpty()) {
             final String query = String.join(" ", sanitizedQuery);
-            String index = esHelper.getSearchableIndex(dataStage, this.utils.getClassForType(type), false);
+            String index = esHelper.getSearchableIndex(dataStage, metaModelRegistry.getTargetClass(type), false);
             Map<String, Object> payload = new HashMap<>();
             Map<String, Object> suggest = new HashMap<>();
             payload.put("suggest", suggest);
-            List<String> fields = searchFieldsController.getSuggestionFields(type);
+            List<String> fields = metaModelRegistry.getSuggestionFields(type);
             for (String field : fields) {
                 suggest.put(field, Map.of("text", query, "term", Map.of("field", field)));
             }
@@ -572,7 +521,7 @@ public class SearchController extends FacetAggregationUtils {
         queryString.put("lenient", true);
         queryString.put("analyze_wildcard", true);
         queryString.put("query", q);
-        List<String> fields = searchFieldsController.getEsQueryFields(type);
+        List<String> fields = metaModelRegistry.getQueryFields(type);
         if (!CollectionUtils.isEmpty(fields)) {
             queryString.put("fields", fields);
         }
@@ -580,7 +529,7 @@ public class SearchController extends FacetAggregationUtils {
     }
 
     private Map<String,Object> getEsHighlight(String type) {
-        List<String> highlights = searchFieldsController.getHighlight(type);
+        List<String> highlights = metaModelRegistry.getHighlight(type);
         if (CollectionUtils.isEmpty(highlights)) {
             return null;
         }
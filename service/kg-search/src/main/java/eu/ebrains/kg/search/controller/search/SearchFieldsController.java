@@ -27,7 +27,6 @@ import eu.ebrains.kg.common.model.target.FieldInfo;
 import eu.ebrains.kg.common.model.target.Value;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Type;
@@ -36,6 +35,10 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Derives the fields to query, suggest and highlight from the target classes - evaluated once at startup by the
+ * {@link eu.ebrains.kg.search.controller.metamodel.MetaModelRegistry}.
+ */
 @Component
 @SuppressWarnings("java:S1452") // we keep the generics intentionally
 public class SearchFieldsController {
@@ -57,7 +60,6 @@ public class SearchFieldsController {
     }
 
 
-    @Cacheable(value = "highlight", key = "#type")
     public List<String> getHighlight(String type) {
         if (StringUtils.isNotBlank(type)) {
             Type targetModel = utils.getTypeTargetClass(type);
@@ -103,7 +105,6 @@ public class SearchFieldsController {
         }
     }
 
-    @Cacheable(value = "suggestFields", key = "#type")
     public List<String> getSuggestionFields(String type) {
         Map<String, Double> fieldsWithBoost = new HashMap<>();
         final Class<?> classForType = utils.getClassForType(type);
@@ -113,7 +114,6 @@ public class SearchFieldsController {
         return fieldsWithBoost.keySet().stream().sorted().collect(Collectors.toList());
     }
 
-    @Cacheable(value = "queryFields", key = "#type")
     public List<String> getEsQueryFields(String type) {
         Map<String, Double> fieldsWithBoost = new HashMap<>();
         Class<?> targetModelForType = null;
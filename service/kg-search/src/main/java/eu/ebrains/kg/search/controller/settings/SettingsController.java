@@ -27,10 +27,9 @@ import eu.ebrains.kg.common.controller.translation.models.TranslatorModel;
 import eu.ebrains.kg.common.model.target.FieldInfo;
 import eu.ebrains.kg.common.model.target.MetaInfo;
 import eu.ebrains.kg.common.utils.MetaModelUtils;
-import eu.ebrains.kg.search.controller.facets.FacetsController;
+import eu.ebrains.kg.search.controller.metamodel.MetaModelRegistry;
 import eu.ebrains.kg.search.model.Facet;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
@@ -44,15 +43,27 @@ import static eu.ebrains.kg.search.utils.FacetsUtils.FACET_BOOKMARKS;
 public class SettingsController {
 
     private final MetaModelUtils utils;
-    private final FacetsController facetsController;
+    private final MetaModelRegistry metaModelRegistry;
+    private final List<Object> types;
+    private final Map<String, Object> typeMappings;
 
-    public SettingsController(MetaModelUtils utils, FacetsController facetsController) {
+    public SettingsController(MetaModelUtils utils, MetaModelRegistry metaModelRegistry) {
         this.utils = utils;
-        this.facetsController = facetsController;
+        this.metaModelRegistry = metaModelRegistry;
+        // The settings only depend on the target classes so they are generated once
+        this.types = Collections.unmodifiableList(generateTypes());
+        this.typeMappings = Collections.unmodifiableMap(generateTypeMappings());
     }
 
-    @Cacheable(value = "typeMappings", unless = "#result == null")
-    public Map<String, Object> generateTypeMappings() {
+    public List<Object> getTypes() {
+        return types;
+    }
+
+    public Map<String, Object> getTypeMappings() {
+        return typeMappings;
+    }
+
+    private Map<String, Object> generateTypeMappings() {
         Map<String, Object> labels = new LinkedHashMap<>();
         for (TranslatorModel<?, ?> model : utils.getTranslatorModels()) {
             Class<?> targetModel = model.getTargetClass();
@@ -64,7 +75,7 @@ public class SettingsController {
         return labels;
     }
 
-    public Map<String, Object> generateTypeMappings(Class<?> clazz) {
+    private Map<String, Object> generateTypeMappings(Class<?> clazz) {
         Map<String, Object> result = new LinkedHashMap<>();
         String type = MetaModelUtils.getNameForClass(clazz);
         result.put("name", type);
@@ -178,8 +189,7 @@ public class SettingsController {
         }
     }
 
-    @Cacheable(value = "types", unless = "#result == null")
-    public List<Object> generateTypes() {
+    private List<Object> generateTypes() {
         Map<Integer, Object> types = new LinkedHashMap<>();
         for (TranslatorModel<?, ?> model : utils.getTranslatorModels()) {
             Class<?> targetModel = model.getTargetClass();
@@ -207,7 +217,7 @@ public class SettingsController {
         }
     }
 
-    public Map<String, Object> generateType(Class<?> clazz, String label, boolean includeBookmarkFacet) {
+    private Map<String, Object> generateType(Class<?> clazz, String label, boolean includeBookmarkFacet) {
         MetaInfo metaInfo = clazz.getAnnotation(MetaInfo.class);
         if (metaInfo == null || !metaInfo.searchable()) {
             return null;
@@ -237,7 +247,7 @@ public class SettingsController {
     }
 
     private List<Object> listFacets(String type) {
-        List<Facet> facets = facetsController.getFacets(type);
+        List<Facet> facets = metaModelRegistry.getFacets(type);
         List<Object> result = new ArrayList<>();
         facets.forEach(f -> {
             Map<String, Object> facet = new LinkedHashMap<>();
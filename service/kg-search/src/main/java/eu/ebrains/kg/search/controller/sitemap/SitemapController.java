@@ -42,6 +42,7 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 public class SitemapController {
@@ -84,8 +85,7 @@ public class SitemapController {
                 return null;
             }
         }).filter(Objects::nonNull).collect(Collectors.toSet());
-        try {
-            List<Document> documents = esServiceClient.getDocumentsForSitemap(index, relevantTypes);
+        try (Stream<Document> documents = esServiceClient.getDocumentsForSitemap(index, relevantTypes)) {
             documents.forEach(doc -> {
                 SitemapXML.Url url = new SitemapXML.Url();
                 url.setLoc(String.format("%s/instances/%s?noSilentSSO=true", ebrainsUrl, doc.getId()));